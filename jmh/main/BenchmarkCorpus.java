@@ -0,0 +1,79 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ベンチマークで利用する固定シード値の問題集
+ * 同じサイズ・種類・問題数であれば、常に同じ問題が作られる。
+ */
+public final class BenchmarkCorpus {
+	public static final long SEED = 20240601L; //問題集を作るシード値
+	private static final int MAXATTEMPTS = 50; //難しい問題を1問探すときの試行回数の上限
+	private static final double LARGEBLANKRATE = 0.62; //16x16以上で難しい問題とする空欄の割合
+
+	//ヒントが17個の9x9の問題(いずれも解がユニークであることを確認済み)
+	private static final String[] SEVENTEEN = {
+		"000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+		"000000012000035000000600070700000300000400800100000000000120000080000040050000600",
+		"000000012003600000000007000410020000000500300700000600280000040000300500000000000",
+		"000000012008030000000000040120500000000004700060000000507000300000620000000100000",
+		"000000013000030080070000000000206000030000900000010000600500204000400700100000000",
+		"000000013000500070000802000000400900107000000000000200890000050040000600000010000",
+		"000000013020500000000000000103000070000802000004000000000340500670000200000010000",
+		"000000014000000203800050000000207000031000000000000650600000700000140000000300000",
+	};
+
+	/**
+	 * 問題集の種類
+	 */
+	public enum Kind {
+		EASY, //空欄の割合が標準の問題
+		HARD, //これ以上ヒントを減らせない問題のうち、テクニックの評価がHARD以上のもの
+		SEVENTEEN; //9x9はヒント17個の問題、それ以外はHARDと同じ作り方の問題
+	}
+
+	private BenchmarkCorpus() {
+	}
+
+	/**
+	 * 問題集を作成する
+	 * 4x4にはHARD以上の問題がないため、HARDはこれ以上ヒントを減らせない問題で代用する。
+	 * 16x16以上でこれ以上ヒントを減らせない問題は、解の個数を数えるのに1問数秒から数十秒かかるため、
+	 * 空欄の割合をLARGEBLANKRATEに抑える(25x25では生成器の判定の打ち切りにより、これより少なくなることがある)。
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param kind : Kind : 問題集の種類
+	 * @param count : int : 問題数
+	 * @return List<Board> : 問題の盤面
+	 */
+	public static List<Board> load(int size, Kind kind, int count) {
+		List<Board> boards = new ArrayList<>();
+		if(kind == Kind.SEVENTEEN && size == 9) {
+			for(int i = 0; i < count; i++) {
+				boards.add(PuzzleFormat.parse(SEVENTEEN[i % SEVENTEEN.length]));
+			}
+			return boards;
+		}
+
+		PuzzleGenerator generator = new PuzzleGenerator(size);
+		LogicSolver logic = new LogicSolver();
+		int index = 0;
+		while(boards.size() < count) {
+			if(kind == Kind.EASY) {
+				boards.add(generator.generate(PuzzleGenerator.puzzleSeed(SEED, index++)));
+				continue;
+			}
+			//全てのセルを掘ろうとすると、これ以上ヒントを減らせない問題になる
+			int targetBlanks = size >= 16 ? (int)Math.round(size * size * LARGEBLANKRATE) : size * size;
+			Board board = null;
+			for(int attempt = 0; attempt < MAXATTEMPTS; attempt++) {
+				board = generator.generate(PuzzleGenerator.puzzleSeed(SEED, index++), targetBlanks);
+				if(kind != Kind.HARD || size != 9 || logic.rate(board).difficulty.compareTo(Difficulty.HARD) >= 0) {
+					break;
+				}
+			}
+			boards.add(board);
+		}
+		return boards;
+	}
+}
@@ -0,0 +1,25 @@
+package main;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークの起動
+ * JMHのコマンドライン引数をそのまま受け取り、GCプロファイラを常に有効にして実行する。
+ * 割り当て量(gc.alloc.rate.norm)が結果に含まれるため、ホットパスでの割り当ての増加を検出できる。
+ *   java -jar target/benchmarks.jar [JMHの引数(例: CountSolutions -p size=9)]
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
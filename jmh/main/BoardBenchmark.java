@@ -0,0 +1,76 @@
+package main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 盤面の判定のベンチマーク
+ * ゲーム中と同じく、1手入力するごとにBoard.isCorrectで盤面を判定する。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+	private static final int MOVES = 1 << 12; //あらかじめ作っておく入力の数
+
+	@Param({"4", "9", "16", "25"})
+	public int size;
+
+	private Board board; //入力する盤面
+	private int[] rows; //入力ごとの行[1, size]
+	private int[] cols; //入力ごとの列[1, size]
+	private int[] values; //入力ごとの値[1, size](0は消去)
+	private int move; //次の入力
+
+	@Setup(Level.Trial)
+	public void setup() {
+		board = BenchmarkCorpus.load(size, BenchmarkCorpus.Kind.EASY, 1).get(0);
+		SplittableRandom random = new SplittableRandom(BenchmarkCorpus.SEED);
+		rows = new int[MOVES];
+		cols = new int[MOVES];
+		values = new int[MOVES];
+		for(int i = 0; i < MOVES; i++) {
+			rows[i] = random.nextInt(size) + 1;
+			cols[i] = random.nextInt(size) + 1;
+			values[i] = random.nextInt(size + 1);
+		}
+	}
+
+	/**
+	 * 1手入力して盤面が数独の制約を満たしているか判定する
+	 */
+	@Benchmark
+	public boolean validate() throws Exception {
+		int i = move++ & (MOVES - 1);
+		if(values[i] == 0) {
+			board.resetCell(rows[i], cols[i]);
+		}else {
+			board.setCell(rows[i], cols[i], values[i]);
+		}
+		return board.isCorrect();
+	}
+
+	/**
+	 * 盤面が完成しているか判定する
+	 */
+	@Benchmark
+	public boolean success() {
+		return board.isSuccess();
+	}
+}
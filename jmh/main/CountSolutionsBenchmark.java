@@ -0,0 +1,59 @@
+package main;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 解の個数を数える処理のベンチマーク
+ * Sudoku.countBoardAnswerと同じく、上限なしでSolver.countSolutionsを呼び出す。
+ * 1回の呼び出しが問題集の1問に当たるため、スコアは1秒あたりに数え終えた問題数になる。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CountSolutionsBenchmark {
+	@Param({"4", "9", "16", "25"})
+	public int size;
+
+	@Param({"EASY", "HARD", "SEVENTEEN"})
+	public BenchmarkCorpus.Kind corpus;
+
+	@Param({"BITMASK", "DLX", "PARALLEL", "LOGIC"})
+	public Solver.Backend backend;
+
+	private List<Board> boards; //問題集
+	private Solver solver; //計測するソルバ
+	private int next; //次に解く問題
+
+	@Setup(Level.Trial)
+	public void setup() {
+		boards = BenchmarkCorpus.load(size, corpus, size >= 16 ? 4 : 32);
+		solver = backend.create();
+	}
+
+	/**
+	 * 問題集の次の問題の解の個数を数える
+	 */
+	@Benchmark
+	public int countSolutions() {
+		Board board = boards.get(next);
+		next = (next + 1) % boards.size();
+		return solver.countSolutions(board);
+	}
+}
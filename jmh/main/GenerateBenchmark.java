@@ -0,0 +1,52 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 問題生成のベンチマーク
+ * Sudoku.genUniqueBoardAltと同じく、解答の作成から穴掘りまでを1問ずつ行う。
+ * 問題ごとのシード値は固定の列から取り出すため、実行ごとに同じ問題の列が生成される。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerateBenchmark {
+	@Param({"4", "9", "16", "25"})
+	public int size;
+
+	@Param({"BITMASK", "DLX", "PARALLEL", "LOGIC"})
+	public Solver.Backend backend;
+
+	private PuzzleGenerator generator; //計測する生成器
+	private int index; //次に生成する問題の番号
+
+	@Setup(Level.Trial)
+	public void setup() {
+		generator = new PuzzleGenerator(size, backend.create());
+		index = 0;
+	}
+
+	/**
+	 * 解がユニークな問題を1問生成する
+	 */
+	@Benchmark
+	public Board generate() {
+		return generator.generate(PuzzleGenerator.puzzleSeed(BenchmarkCorpus.SEED, index++));
+	}
+}
@@ -0,0 +1,110 @@
+package main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 並列ソルバのスケーリングのベンチマーク
+ * 解が多数ある盤面の解の全数え上げ(COUNT)と、解がユニークかの判定(UNIQUE、解を2つで打ち切る探索)を
+ * スレッド数を変えて実行する。threads=1のスコアとの比が速度比になる。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelSolverBenchmark {
+	private static final int BOARDS = 3; //計測に利用する盤面数
+	private static final int COUNTBLANKS = 58; //全数え上げ用の9x9盤面の空欄数
+
+	/**
+	 * 計測する探索の種類
+	 */
+	public enum Workload {
+		COUNT, //9x9の完成盤面から空欄を多く空けた、解を多数持つ盤面の全数え上げ
+		UNIQUE; //16x16の完成盤面から半分のセルを空けた盤面の、解を2つで打ち切る探索
+	}
+
+	@Param({"1", "2", "4", "8", "16"})
+	public int threads;
+
+	@Param({"COUNT", "UNIQUE"})
+	public Workload workload;
+
+	private Board[] boards; //計測する盤面
+	private int limit; //数える解の個数の上限
+	private ParallelSolver solver; //計測するソルバ
+
+	@Setup(Level.Trial)
+	public void setup() {
+		SplittableRandom random = new SplittableRandom(BenchmarkCorpus.SEED);
+		int size = workload == Workload.COUNT ? 9 : 16;
+		int blanks = workload == Workload.COUNT ? COUNTBLANKS : size * size / 2;
+		limit = workload == Workload.COUNT ? Integer.MAX_VALUE : 2;
+		boards = new Board[BOARDS];
+		for(int i = 0; i < BOARDS; i++) {
+			boards[i] = clear(PuzzleGenerator.genAnswerBoard(size, random), blanks, random);
+		}
+		solver = new ParallelSolver(threads);
+
+		//計測前に解の個数がBitSolverと一致することを確認する
+		BitSolver reference = new BitSolver();
+		for(Board board : boards) {
+			if(solver.countSolutions(board, limit) != reference.countSolutions(board, limit)) {
+				throw new IllegalStateException("解の個数がBitSolverと一致しません");
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		solver.shutdown();
+	}
+
+	/**
+	 * 全ての盤面の解の個数を数える
+	 */
+	@Benchmark
+	public long countSolutions() {
+		long solutions = 0;
+		for(Board board : boards) {
+			solutions += solver.countSolutions(board, limit);
+		}
+		return solutions;
+	}
+
+	/**
+	 * 盤面のセルをランダムに選んで空欄にする
+	 * @param board : Board : 完成盤面(破壊的に変更される)
+	 * @param blanks : int : 空欄の数
+	 * @param random : SplittableRandom : 利用する乱数
+	 * @return Board : 空欄を空けた盤面
+	 */
+	private static Board clear(Board board, int blanks, SplittableRandom random) {
+		int size = board.SIZE;
+		int[] order = new int[size * size];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Sudoku.shuffle(order, random);
+		for(int i = 0; i < blanks; i++) {
+			board.resetCell(order[i] / size + 1, order[i] % size + 1);
+		}
+		return board;
+	}
+}
@@ -0,0 +1,781 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 対話なしで問題を一括処理するコマンド
+ * 問題は1行1問のテキスト形式(PuzzleFormat)で読み書きする。
+ *   gen   -s サイズ -n 問題数 [-t スレッド数] [-o 出力] [--seed シード値] [--blanks 空欄数] [-b ソルバ] [--dedup]
+ *   solve [-i 入力] [-o 出力] [-t スレッド数] [-b ソルバ] [--verify]
+ *   rate  [-i 入力] [-o 出力] [-t スレッド数]
+ *   dedup [-i 入力] [-o 出力] [-t スレッド数]
+ *   multiply -i 元の問題 -n 問題数 [-t スレッド数] [-o 出力] [--seed シード値]
+ *   scan  -i 入力 [-t スレッド数] [--chunk チャンクの大きさ[MiB]]
+ *   store [-i 入力] -o 保存先 [-t スレッド数]
+ *   pick  -i 保存先 [-s サイズ] [-n 問題数] [-d 難易度] [--clues 下限-上限] [--seed シード値]
+ *   serve [-p ポート] [-s サイズ] [--bind アドレス]
+ *   loadtest [--host ホスト] [-p ポート] [-c セッション数] [-n コマンド数] [-s サイズ] [--seed シード値]
+ *   script -s サイズ --seed シード値 [-o 出力] [--wrong 手数] [-b ソルバ]
+ *   replay -s サイズ --seed シード値 [-i 台本] [-n 回数] [--batch 手数] [--render none|full|diff] [--check] [-b ソルバ]
+ * 入出力を省略した場合は標準入出力を利用する。集計結果は標準エラー出力に書き出す。
+ * 入力はBLOCK行ずつ読み込んで並列に処理し、入力と同じ順序で書き出すため、
+ * メモリ使用量は入力の行数によらない。
+ */
+public class BatchCli {
+	private static final int BLOCK = 4096; //一度に読み込んで並列に処理する行数
+	private static final int BUFFERSIZE = 1 << 16; //入出力のバッファサイズ[byte]
+	private static final int MAXDEDUPATTEMPTS = 1000; //重複しない問題を1問生成するときの試行回数の上限
+	private static final long POOLWARMUPMILLIS = 10000; //ゲームサーバの起動時に問題を蓄える時間の上限[ms]
+
+	/**
+	 * 1行を処理する処理
+	 * スレッドごとに生成されるため、ソルバなどの作業領域を持ってよい。
+	 */
+	private interface Task<R> {
+		/**
+		 * 1件を処理する
+		 * @param index : long : 入力の通し番号
+		 * @param line : String : 入力の行(問題生成の場合はnull)
+		 * @return R : 処理結果
+		 */
+		R process(long index, String line);
+	}
+
+	/**
+	 * 処理結果を入力と同じ順序で受け取る処理
+	 * 呼び出し元のスレッドからのみ呼ばれる。
+	 */
+	private interface Sink<R> {
+		/**
+		 * 1件の処理結果を受け取る
+		 * @param result : R : 処理結果
+		 * @throws IOException : 書き込みに失敗したときのエラー
+		 */
+		void accept(R result) throws IOException;
+	}
+
+	/**
+	 * コマンドライン引数で指定されたサブコマンドを実行する
+	 * @param args : String[] : コマンドライン引数
+	 * @return int : 終了コード(正常終了なら0)
+	 */
+	public static int run(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for(int i = 1; i < args.length; i++) {
+			if(args[i].equals("--verify") || args[i].equals("--dedup") || args[i].equals("--check")) {
+				options.put(args[i], "true");
+			}else if(i + 1 < args.length) {
+				options.put(args[i], args[++i]);
+			}else {
+				return usage("値が指定されていないオプションです: " + args[i]);
+			}
+		}
+		try {
+			int threads = Integer.parseInt(options.getOrDefault("-t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+			Solver.Backend backend = Solver.Backend.valueOf(options.getOrDefault("-b", Solver.Backend.BITMASK.name()).toUpperCase());
+			switch(args[0]) {
+			case "gen":
+				return generate(options, threads, backend);
+			case "solve":
+				return solve(options, threads, backend);
+			case "rate":
+				return rate(options, threads);
+			case "dedup":
+				return dedup(options, threads);
+			case "multiply":
+				return multiply(options, threads);
+			case "scan":
+				return scan(options, threads);
+			case "store":
+				return store(options, threads);
+			case "pick":
+				return pick(options);
+			case "serve":
+				return serve(options);
+			case "loadtest":
+				return loadtest(options);
+			case "script":
+				return script(options, backend);
+			case "replay":
+				return replay(options, backend);
+			default:
+				return usage("不明なサブコマンドです: " + args[0]);
+			}
+		}catch(IllegalArgumentException e) {
+			return usage(e.getMessage());
+		}catch(IllegalStateException e) {
+			System.err.println(e.getCause() != null ? e.getMessage() + ": " + e.getCause().getMessage() : e.getMessage());
+			return 1;
+		}catch(IOException e) {
+			System.err.println("入出力に失敗しました: " + e.getMessage());
+			return 1;
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 1;
+		}
+	}
+
+	/**
+	 * 問題を生成して書き出す
+	 * 問題番号ごとのシード値はPuzzleGenerator.generateBatchと同じ方法で決める。
+	 * --dedupを指定した場合は、既に生成した問題と対称性で移り合う問題を、
+	 * 問題番号のシード値から作った別のシード値で生成し直す。
+	 * 重複の判定は全てのスレッドで共有するFingerprintSetで行うため、出力は全て互いに異なる問題になる。
+	 * ただし重複した2問のどちらを残すかはスレッドの実行順によるため、
+	 * 複数スレッドで重複が起きた場合は同じシード値でも出力が変わることがある。
+	 * 終了時に全てのスレッドの生成の統計を標準エラー出力に書き出す。
+	 */
+	private static int generate(Map<String, String> options, int threads, Solver.Backend backend) throws IOException, InterruptedException {
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		long count = Long.parseLong(options.getOrDefault("-n", "1"));
+		long seed = options.containsKey("--seed") ? Long.parseLong(options.get("--seed")) : new SplittableRandom().nextLong();
+		int blanks = Integer.parseInt(options.getOrDefault("--blanks", "-1"));
+		if(PuzzleFormat.sizeOf(size * size) == 0) {
+			throw new IllegalArgumentException("対応していない盤面サイズです: " + size);
+		}
+		FingerprintSet seen = options.containsKey("--dedup") ? new FingerprintSet() : null;
+		AtomicInteger duplicates = new AtomicInteger();
+		List<PuzzleGenerator> generators = new ArrayList<>();
+		try(Writer out = openOutput(options)) {
+			int code = process("gen", null, count, lines(out), threads, () -> {
+				PuzzleGenerator generator = new PuzzleGenerator(size, backend.create());
+				PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+				synchronized(generators) {
+					generators.add(generator);
+				}
+				return (index, line) -> {
+					long puzzleSeed = PuzzleGenerator.puzzleSeed(seed, index);
+					Board board = blanks < 0 ? generator.generate(puzzleSeed) : generator.generate(puzzleSeed, blanks);
+					for(int attempt = 1; seen != null && !seen.add(canonicalizer.fingerprint(board)); attempt++) {
+						if(attempt > MAXDEDUPATTEMPTS) {
+							throw new IllegalStateException("重複しない問題を生成できませんでした(問題番号 " + index + ")");
+						}
+						duplicates.incrementAndGet();
+						long retrySeed = PuzzleGenerator.puzzleSeed(puzzleSeed, attempt);
+						board = blanks < 0 ? generator.generate(retrySeed) : generator.generate(retrySeed, blanks);
+					}
+					return PuzzleFormat.format(board);
+				};
+			});
+			PuzzleGenerator.Stats stats = new PuzzleGenerator.Stats();
+			for(PuzzleGenerator generator : generators) {
+				stats.add(generator.getStats());
+			}
+			System.err.println("gen stats: " + stats);
+			if(seen != null) {
+				System.err.println("gen dedup: " + duplicates.get() + " duplicates regenerated, " + seen.size() + " distinct puzzles");
+			}
+			return code;
+		}
+	}
+
+	/**
+	 * 入力の問題を解いて解答を書き出す
+	 * --verifyを指定した場合は解答の代わりに解の個数(none / unique / multiple)を書き出す。
+	 * 解がない・解釈できない問題の解答は "-" とする。
+	 */
+	private static int solve(Map<String, String> options, int threads, Solver.Backend backend) throws IOException, InterruptedException {
+		boolean verify = options.containsKey("--verify");
+		try(BufferedReader in = openInput(options); Writer out = openOutput(options)) {
+			return process(verify ? "verify" : "solve", in, Long.MAX_VALUE, lines(out), threads, () -> {
+				Solver solver = backend.create();
+				return (index, line) -> {
+					Board board;
+					try {
+						board = PuzzleFormat.parse(line);
+					}catch(IllegalArgumentException e) {
+						return verify ? line + "\tinvalid" : "-";
+					}
+					if(verify) {
+						int solutions = solver.countSolutions(board, 2);
+						return line + "\t" + (solutions == 0 ? "none" : solutions == 1 ? "unique" : "multiple");
+					}
+					Board answer = solver.solve(board);
+					return answer == null ? "-" : PuzzleFormat.format(answer);
+				};
+			});
+		}
+	}
+
+	/**
+	 * 入力の問題の難易度を評価して書き出す
+	 * 出力は「問題 難易度 点数」をタブ区切りにしたもの。
+	 */
+	private static int rate(Map<String, String> options, int threads) throws IOException, InterruptedException {
+		try(BufferedReader in = openInput(options); Writer out = openOutput(options)) {
+			return process("rate", in, Long.MAX_VALUE, lines(out), threads, () -> {
+				LogicSolver solver = new LogicSolver();
+				return (index, line) -> {
+					LogicSolver.Rating rating;
+					try {
+						rating = solver.rate(PuzzleFormat.parse(line));
+					}catch(IllegalArgumentException e) {
+						return line + "\tinvalid";
+					}
+					return rating == null ? line + "\tnone" : line + "\t" + rating.difficulty + "\t" + rating.score;
+				};
+			});
+		}
+	}
+
+	/**
+	 * 入力の問題から、対称性で前の問題と移り合う問題を取り除いて書き出す
+	 * 正規形の指紋の計算は並列に行い、重複の判定は入力の順に行うため、常に最初に現れた問題が残る。
+	 * 解釈できない行は取り除く。
+	 */
+	private static int dedup(Map<String, String> options, int threads) throws IOException, InterruptedException {
+		FingerprintSet seen = new FingerprintSet();
+		long[] counts = new long[3]; //残した・重複・解釈できない問題数
+		try(BufferedReader in = openInput(options); Writer out = openOutput(options)) {
+			Sink<FingerprintedLine> sink = result -> {
+				if(result == null) {
+					counts[2]++;
+				}else if(seen.add(result.fingerprint)) {
+					counts[0]++;
+					out.write(result.line);
+					out.write('\n');
+				}else {
+					counts[1]++;
+				}
+			};
+			int code = process("dedup", in, Long.MAX_VALUE, sink, threads, () -> {
+				PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+				return (index, line) -> {
+					try {
+						return new FingerprintedLine(line, canonicalizer.fingerprint(PuzzleFormat.parse(line)));
+					}catch(IllegalArgumentException e) {
+						return null;
+					}
+				};
+			});
+			System.err.println("dedup: " + counts[0] + " kept, " + counts[1] + " duplicates, " + counts[2] + " invalid");
+			return code;
+		}
+	}
+
+	/**
+	 * 元の問題の対称変換で問題を増やして書き出す
+	 * 元の問題は読み込み時に1度だけ解がユニークか判定し、ユニークでない・解釈できない問題と、
+	 * 対称性で前の問題と移り合う問題は読み飛ばす。
+	 * i番目の問題は (i mod 元の問題数) 番目の元の問題を、seedとiのみから決まる乱数で変換したものとする。
+	 * 変換はソルバを利用しないため、ヒントの数と難易度は元の問題と同じになる。
+	 */
+	private static int multiply(Map<String, String> options, int threads) throws IOException, InterruptedException {
+		if(!options.containsKey("-i")) {
+			throw new IllegalArgumentException("元の問題のファイルを指定してください");
+		}
+		long count = Long.parseLong(options.getOrDefault("-n", "1"));
+		long seed = options.containsKey("--seed") ? Long.parseLong(options.get("--seed")) : new SplittableRandom().nextLong();
+
+		List<SeedPuzzle> seeds = new ArrayList<>();
+		long skipped = 0;
+		try(BufferedReader in = openInput(options)) {
+			BitSolver solver = new BitSolver();
+			PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+			FingerprintSet seen = new FingerprintSet();
+			for(String line = in.readLine(); line != null; line = in.readLine()) {
+				if(line.isBlank()) {
+					continue;
+				}
+				Board board;
+				try {
+					board = PuzzleFormat.parse(line.strip());
+				}catch(IllegalArgumentException e) {
+					skipped++;
+					continue;
+				}
+				if(solver.countSolutions(board, 2) != 1 || !seen.add(canonicalizer.fingerprint(board))) {
+					skipped++;
+					continue;
+				}
+				seeds.add(new SeedPuzzle(board));
+			}
+		}
+		System.err.println("multiply: " + seeds.size() + " seed puzzles, " + skipped + " skipped");
+		if(seeds.isEmpty()) {
+			System.err.println("元の問題がありません");
+			return 1;
+		}
+
+		try(Writer out = openOutput(options)) {
+			return process("multiply", null, count, lines(out), threads, () -> {
+				Map<Integer, PuzzleTransform> transforms = new HashMap<>();
+				return (index, line) -> {
+					SeedPuzzle puzzle = seeds.get((int)(index % seeds.size()));
+					PuzzleTransform transform = transforms.computeIfAbsent(puzzle.size, PuzzleTransform::new);
+					transform.randomize(new SplittableRandom(PuzzleGenerator.puzzleSeed(seed, index)));
+					int[] values = new int[puzzle.values.length];
+					transform.apply(puzzle.values, values);
+					char[] symbols = new char[values.length];
+					for(int i = 0; i < values.length; i++) {
+						symbols[i] = PuzzleFormat.symbolOf(values[i]);
+					}
+					return new String(symbols);
+				};
+			});
+		}
+	}
+
+	/**
+	 * 大きな問題ファイルをメモリマップで読み込み、全ての問題の解の個数を集計する
+	 * 行ごとのStringを作らないため、数千万行のファイルでもメモリ使用量が一定になる。
+	 * 問題ごとの出力は行わず、解の個数ごとの問題数のみを書き出す。
+	 */
+	private static int scan(Map<String, String> options, int threads) throws IOException, InterruptedException {
+		if(!options.containsKey("-i")) {
+			throw new IllegalArgumentException("入力ファイルを指定してください");
+		}
+		long chunkSize = options.containsKey("--chunk") ? Long.parseLong(options.get("--chunk")) << 20 : MappedPuzzleReader.DEFAULTCHUNKSIZE;
+		long[] counts = new long[4]; //解なし・ユニーク・複数解・解釈できない行の問題数
+		List<LatencyStats> allStats = new ArrayList<>();
+
+		long start = System.nanoTime();
+		try(MappedPuzzleReader reader = new MappedPuzzleReader(Paths.get(options.get("-i")))) {
+			reader.forEach(threads, chunkSize, () -> {
+				BitSolver solver = new BitSolver();
+				LatencyStats local = new LatencyStats();
+				synchronized(allStats) {
+					allStats.add(local);
+				}
+				return new MappedPuzzleReader.PuzzleConsumer() {
+					@Override
+					public void accept(int size, int[] values) {
+						long begin = System.nanoTime();
+						int solutions = solver.countSolutions(size, values, 2);
+						local.record(System.nanoTime() - begin);
+						synchronized(counts) {
+							counts[solutions]++;
+						}
+					}
+
+					@Override
+					public void invalid() {
+						synchronized(counts) {
+							counts[3]++;
+						}
+					}
+				};
+			});
+		}
+
+		LatencyStats total = new LatencyStats();
+		for(LatencyStats local : allStats) {
+			total.merge(local);
+		}
+		System.out.println("none\t" + counts[0]);
+		System.out.println("unique\t" + counts[1]);
+		System.out.println("multiple\t" + counts[2]);
+		System.out.println("invalid\t" + counts[3]);
+		System.err.println("scan: " + total.summary(System.nanoTime() - start));
+		return 0;
+	}
+
+	/**
+	 * 入力の問題を解いて難易度を評価し、PuzzleStoreに追記する
+	 * 解がユニークでない・解釈できない問題は読み飛ばす。
+	 */
+	private static int store(Map<String, String> options, int threads) throws IOException, InterruptedException {
+		if(!options.containsKey("-o")) {
+			throw new IllegalArgumentException("保存先を指定してください");
+		}
+		try(BufferedReader in = openInput(options); PuzzleStore store = new PuzzleStore(Paths.get(options.get("-o")))) {
+			long before = store.size();
+			int code = process("store", in, Long.MAX_VALUE, entry -> {
+				if(entry != null) {
+					store.append(entry.puzzle, entry.solution, entry.difficulty);
+				}
+			}, threads, () -> {
+				LogicSolver solver = new LogicSolver();
+				return (index, line) -> {
+					Board board;
+					try {
+						board = PuzzleFormat.parse(line);
+					}catch(IllegalArgumentException e) {
+						return null;
+					}
+					if(solver.countSolutions(board, 2) != 1) {
+						return null;
+					}
+					LogicSolver.Rating rating = solver.rate(board);
+					int clues = board.SIZE * board.SIZE - board.countBlanks();
+					return new PuzzleStore.Entry(board.SIZE, clues, rating.difficulty, board, rating.solution);
+				};
+			});
+			System.err.println("store: " + (store.size() - before) + " puzzles added, " + store.size() + " in total");
+			return code;
+		}
+	}
+
+	/**
+	 * PuzzleStoreから条件に合う問題をランダムに取り出して書き出す
+	 */
+	private static int pick(Map<String, String> options) throws IOException {
+		if(!options.containsKey("-i")) {
+			throw new IllegalArgumentException("保存先を指定してください");
+		}
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		long count = Long.parseLong(options.getOrDefault("-n", "1"));
+		Difficulty difficulty = options.containsKey("-d") ? Difficulty.valueOf(options.get("-d").toUpperCase()) : null;
+		String[] clues = options.getOrDefault("--clues", "0-" + size * size).split("-");
+		if(clues.length != 2) {
+			throw new IllegalArgumentException("ヒント数は 下限-上限 の形式で指定してください");
+		}
+		SplittableRandom random = options.containsKey("--seed") ? new SplittableRandom(Long.parseLong(options.get("--seed"))) : new SplittableRandom();
+
+		try(PuzzleStore store = new PuzzleStore(Paths.get(options.get("-i"))); Writer out = openOutput(options)) {
+			for(long i = 0; i < count; i++) {
+				PuzzleStore.Entry entry = store.random(size, difficulty, Integer.parseInt(clues[0]), Integer.parseInt(clues[1]), random);
+				if(entry == null) {
+					System.err.println("条件に合う問題がありません");
+					return 1;
+				}
+				out.write(PuzzleFormat.format(entry.puzzle));
+				out.write('\n');
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * ゲームサーバを起動し、終了されるまで接続を受け付ける
+	 * 待ち受けるアドレスの標準は127.0.0.1で、他のホストからは接続できない。
+	 * 問題のプールは受け付けを始める前に蓄えておく。
+	 */
+	private static int serve(Map<String, String> options) throws IOException, InterruptedException {
+		int port = Integer.parseInt(options.getOrDefault("-p", String.valueOf(GameServer.DEFAULTPORT)));
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		InetAddress address = InetAddress.getByName(options.getOrDefault("--bind", "127.0.0.1"));
+		try(PuzzlePool pool = newServerPool(size); GameServer server = new GameServer(address, port, pool, size)) {
+			System.err.println("listening on " + address.getHostAddress() + ":" + server.getPort()
+					+ " (" + (server.usesVirtualThreads() ? "virtual" : "platform") + " threads)");
+			server.serve();
+		}
+		return 0;
+	}
+
+	/**
+	 * ゲームサーバに多数のセッションを接続し、コマンドごとの応答時間を集計する
+	 * -pを省略した場合は、同じプロセスで空いているポートにサーバを起動して試験する。
+	 * -sは同じプロセスで起動するサーバの盤面サイズで、接続先のサーバを指定した場合は利用しない。
+	 */
+	private static int loadtest(Map<String, String> options) throws IOException, InterruptedException {
+		int sessions = Integer.parseInt(options.getOrDefault("-c", "1000"));
+		int commands = Integer.parseInt(options.getOrDefault("-n", "100"));
+		long seed = options.containsKey("--seed") ? Long.parseLong(options.get("--seed")) : new SplittableRandom().nextLong();
+		if(options.containsKey("-p")) {
+			GameLoadTest test = new GameLoadTest(options.getOrDefault("--host", "127.0.0.1"), Integer.parseInt(options.get("-p")), sessions, commands, seed);
+			test.run();
+			System.err.print(test.report());
+			return test.isClean() ? 0 : 1;
+		}
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		InetAddress address = InetAddress.getLoopbackAddress();
+		try(PuzzlePool pool = newServerPool(size); GameServer server = new GameServer(address, 0, pool, size)) {
+			server.start();
+			GameLoadTest test = new GameLoadTest(address.getHostAddress(), server.getPort(), sessions, commands, seed);
+			test.run();
+			System.err.print(test.report());
+			return test.isClean() ? 0 : 1;
+		}
+	}
+
+	/**
+	 * ゲームサーバの問題のプールを作り、蓄え終わるまで待つ
+	 * @param size : int : 接続時の盤面サイズ
+	 * @return PuzzlePool : 問題のプール
+	 */
+	private static PuzzlePool newServerPool(int size) throws InterruptedException {
+		PuzzlePool pool = new PuzzlePool(null, GameServer.POOLCAPACITY, GameServer.POOLLOWWATER, Solver.Backend.BITMASK, size);
+		pool.awaitFull(POOLWARMUPMILLIS);
+		return pool;
+	}
+
+	/**
+	 * 問題を解く手の台本を書き出す
+	 * 問題はreplayと同じく-sと--seedからSudokuと同じ方法で生成し、空欄を全て解答の値で埋める手をランダムな順序で並べる。
+	 * --wrongを指定した場合は、最初のその数の空欄に間違った値を入力してから正しい値を入力し直す。
+	 */
+	private static int script(Map<String, String> options, Solver.Backend backend) throws IOException {
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		long seed = requiredSeed(options);
+		int wrong = Integer.parseInt(options.getOrDefault("--wrong", "0"));
+		Puzzle puzzle = new PuzzleGenerator(size, backend.create()).generatePuzzle(seed);
+		int[] blanks = new int[puzzle.board.countBlanks()];
+		int length = 0;
+		for(int cell = 0; cell < size * size; cell++) {
+			if(puzzle.board.isBlank(cell / size + 1, cell % size + 1)) {
+				blanks[length++] = cell;
+			}
+		}
+		Sudoku.shuffle(blanks, new SplittableRandom(seed));
+		try(Writer out = openOutput(options)) {
+			out.write("# size " + size + " seed " + seed + "\n");
+			for(int i = 0; i < blanks.length; i++) {
+				int cell = blanks[i];
+				int answer = PuzzleCodec.cellAt(puzzle.solution, size, cell);
+				String position = (cell / size + 1) + " " + (cell % size + 1) + " ";
+				if(i < wrong) {
+					out.write(position + (answer % size + 1) + "\n");
+				}
+				out.write(position + answer + "\n");
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 台本の手でゲームを進め、手の反映と表示にかかった時間を集計する
+	 * 問題は-sと--seedからSudokuと同じ方法で1度だけ生成し、台本は最初に全て読み込んでおく。
+	 * -nを指定した場合は同じ問題と台本で繰り返し、全ての回の合計を標準エラー出力に書き出す。
+	 * 表示は--renderで選び(標準はnone)、盤面は標準出力に書き出す。
+	 */
+	private static int replay(Map<String, String> options, Solver.Backend backend) throws IOException {
+		int size = Integer.parseInt(options.getOrDefault("-s", "9"));
+		long seed = requiredSeed(options);
+		int rounds = Integer.parseInt(options.getOrDefault("-n", "1"));
+		if(rounds <= 0) {
+			throw new IllegalArgumentException("回数の指定が不正です: " + rounds);
+		}
+		int batch = Integer.parseInt(options.getOrDefault("--batch", String.valueOf(MoveScript.DEFAULTBATCH)));
+		String render = options.getOrDefault("--render", "none").toUpperCase();
+		BoardRenderer renderer = render.equals("NONE") ? null : new BoardRenderer(System.out, BoardRenderer.Mode.valueOf(render));
+		StringBuilder text = new StringBuilder();
+		try(BufferedReader in = openInput(options)) {
+			char[] buffer = new char[BUFFERSIZE];
+			int read;
+			while((read = in.read(buffer)) >= 0) {
+				text.append(buffer, 0, read);
+			}
+		}
+
+		Puzzle puzzle = new PuzzleGenerator(size, backend.create()).generatePuzzle(seed);
+		Sudoku.ScriptStats total = null;
+		for(int round = 0; round < rounds; round++) {
+			Sudoku game = new Sudoku(null, new Puzzle(puzzle.seed, new Board(puzzle.board), puzzle.solution));
+			game.setChecking(options.containsKey("--check"));
+			if(renderer != null) {
+				renderer.invalidate();
+			}
+			Sudoku.ScriptStats stats = game.execScript(new MoveScript(new StringReader(text.toString()), batch), renderer);
+			if(total == null) {
+				total = stats;
+			}else {
+				total.merge(stats);
+			}
+		}
+		System.err.println(total);
+		return 0;
+	}
+
+	/**
+	 * 台本と問題を対応させるための--seedを返す
+	 */
+	private static long requiredSeed(Map<String, String> options) {
+		if(!options.containsKey("--seed")) {
+			throw new IllegalArgumentException("シード値を指定してください");
+		}
+		return Long.parseLong(options.get("--seed"));
+	}
+
+	/**
+	 * 入力をブロックごとに並列処理し、入力と同じ順序で書き出す
+	 * @param name : String : 集計結果に表示する処理名
+	 * @param in : BufferedReader : 入力(問題生成の場合はnull)
+	 * @param count : long : 処理する件数の上限
+	 * @param sink : Sink<R> : 処理結果を受け取る処理
+	 * @param threads : int : スレッド数
+	 * @param factory : Supplier<Task<R>> : スレッドごとの処理を生成する
+	 * @return int : 終了コード
+	 */
+	private static <R> int process(String name, BufferedReader in, long count, Sink<R> sink, int threads, Supplier<Task<R>> factory) throws IOException, InterruptedException {
+		int workers = Math.max(1, threads);
+		List<LatencyStats> allStats = new ArrayList<>();
+		ThreadLocal<Task<R>> tasks = ThreadLocal.withInitial(factory);
+		ThreadLocal<LatencyStats> stats = ThreadLocal.withInitial(() -> {
+			LatencyStats local = new LatencyStats();
+			synchronized(allStats) {
+				allStats.add(local);
+			}
+			return local;
+		});
+
+		String[] lines = new String[BLOCK];
+		@SuppressWarnings("unchecked")
+		R[] results = (R[])new Object[BLOCK];
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		long start = System.nanoTime();
+		try {
+			long base = 0;
+			while(base < count) {
+				//1ブロック分を読み込む
+				int blockSize = 0;
+				while(blockSize < BLOCK && base + blockSize < count) {
+					if(in != null) {
+						String line = in.readLine();
+						if(line == null) {
+							break;
+						}
+						if(line.isBlank()) {
+							continue;
+						}
+						lines[blockSize] = line.strip();
+					}
+					blockSize++;
+				}
+				if(blockSize == 0) {
+					break;
+				}
+
+				//ブロック内の行をスレッド間で分配して処理する
+				int size = blockSize;
+				long offset = base;
+				AtomicInteger next = new AtomicInteger();
+				List<Future<?>> futures = new ArrayList<>();
+				for(int i = 0; i < Math.min(workers, size); i++) {
+					futures.add(executor.submit(() -> {
+						Task<R> task = tasks.get();
+						LatencyStats local = stats.get();
+						for(int index = next.getAndIncrement(); index < size; index = next.getAndIncrement()) {
+							long begin = System.nanoTime();
+							results[index] = task.process(offset + index, lines[index]);
+							local.record(System.nanoTime() - begin);
+						}
+					}));
+				}
+				for(Future<?> future : futures) {
+					try {
+						future.get();
+					}catch(ExecutionException e) {
+						throw new IllegalStateException("問題の処理に失敗しました", e.getCause());
+					}
+				}
+
+				for(int i = 0; i < size; i++) {
+					sink.accept(results[i]);
+				}
+				base += size;
+			}
+		}finally {
+			executor.shutdownNow();
+		}
+
+		LatencyStats total = new LatencyStats();
+		for(LatencyStats local : allStats) {
+			total.merge(local);
+		}
+		System.err.println(name + ": " + total.summary(System.nanoTime() - start));
+		return 0;
+	}
+
+	/**
+	 * 入力の行と、その問題の正規形の指紋の組
+	 */
+	private static class FingerprintedLine {
+		final String line; //入力の行
+		final Fingerprint fingerprint; //正規形の指紋
+
+		FingerprintedLine(String line, Fingerprint fingerprint) {
+			this.line = line;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	/**
+	 * 対称変換で問題を増やすときの元の問題
+	 */
+	private static class SeedPuzzle {
+		final int size; //盤面の一辺の長さ
+		final int[] values; //セルごとの値(0は空欄、[1, size]は数字)
+
+		SeedPuzzle(Board board) {
+			this.size = board.SIZE;
+			this.values = new int[size * size];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = board.getCell(i / size + 1, i % size + 1);
+			}
+		}
+	}
+
+	/**
+	 * 処理結果を1行ずつ書き出す処理を返す
+	 * @param out : Writer : 出力先
+	 * @return Sink<String> : 処理結果を受け取る処理
+	 */
+	private static Sink<String> lines(Writer out) {
+		return line -> {
+			out.write(line);
+			out.write('\n');
+		};
+	}
+
+	/**
+	 * 入力を開く(-iがなければ標準入力)
+	 */
+	private static BufferedReader openInput(Map<String, String> options) throws IOException {
+		Reader reader = options.containsKey("-i")
+				? Files.newBufferedReader(Paths.get(options.get("-i")), StandardCharsets.US_ASCII)
+				: new InputStreamReader(System.in, StandardCharsets.US_ASCII);
+		return new BufferedReader(reader, BUFFERSIZE);
+	}
+
+	/**
+	 * 出力を開く(-oがなければ標準出力)
+	 * 標準出力の場合は閉じても標準出力自体は閉じない。
+	 */
+	private static Writer openOutput(Map<String, String> options) throws IOException {
+		if(options.containsKey("-o")) {
+			return new BufferedWriter(Files.newBufferedWriter(Paths.get(options.get("-o")), StandardCharsets.US_ASCII), BUFFERSIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), BUFFERSIZE) {
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * 使い方を表示する
+	 * @param message : String : エラーの内容
+	 * @return int : 終了コード
+	 */
+	private static int usage(String message) {
+		System.err.println(message);
+		System.err.println("使い方:");
+		System.err.println("  gen   -s サイズ -n 問題数 [-t スレッド数] [-o 出力] [--seed シード値] [--blanks 空欄数] [-b ソルバ] [--dedup]");
+		System.err.println("  solve [-i 入力] [-o 出力] [-t スレッド数] [-b ソルバ] [--verify]");
+		System.err.println("  rate  [-i 入力] [-o 出力] [-t スレッド数]");
+		System.err.println("  dedup [-i 入力] [-o 出力] [-t スレッド数]");
+		System.err.println("  multiply -i 元の問題 -n 問題数 [-t スレッド数] [-o 出力] [--seed シード値]");
+		System.err.println("  scan  -i 入力 [-t スレッド数] [--chunk チャンクの大きさ[MiB]]");
+		System.err.println("  store [-i 入力] -o 保存先 [-t スレッド数]");
+		System.err.println("  pick  -i 保存先 [-s サイズ] [-n 問題数] [-d 難易度] [--clues 下限-上限] [--seed シード値]");
+		System.err.println("  serve [-p ポート] [-s サイズ] [--bind アドレス]");
+		System.err.println("  loadtest [--host ホスト] [-p ポート] [-c セッション数] [-n コマンド数] [-s サイズ] [--seed シード値]");
+		System.err.println("  script -s サイズ --seed シード値 [-o 出力] [--wrong 手数] [-b ソルバ]");
+		System.err.println("  replay -s サイズ --seed シード値 [-i 台本] [-n 回数] [--batch 手数] [--render none|full|diff] [--check] [-b ソルバ]");
+		return 2;
+	}
+}
@@ -0,0 +1,332 @@
+package main;
+
+/**
+ * ビット演算による数独ソルバ
+ * 行・列・格子ごとに使用済みの数字をintのビットマスクで管理し、
+ * 候補数が最も少ない空欄(MRV)から順に探索する。
+ * 16x16以上では、候補が1つの空欄がないときにユニット内で置き場所が1つしかない数字(隠れたシングル)を先に確定させる。
+ * 大きな盤面では探索木がこれにより大きく縮むが、9x9以下では探索木があまり変わらず集計の分だけ遅くなるため行わない。
+ * ノード数の上限を指定した探索では、上限に達した時点で打ち切ってUNKNOWNを返す。
+ * 探索中は盤面をコピーせず、SearchStateへの代入と巻き戻しで状態を戻す。
+ * インスタンスは探索用の作業領域を持つため、スレッド間で共有しないこと。
+ */
+public class BitSolver implements Solver {
+	static final int HIDDENSINGLESIZE = 16; //隠れたシングルを探す盤面サイズの下限
+	static final int NOHIDDENSINGLE = -1; //隠れたシングルが見つからなかったことを表す値
+	static final int NOPLACE = -2; //置き場所のない数字があったことを表す値
+
+	private final SearchStats stats; //探索の統計
+	private SearchState state; //盤面を読み込む作業領域
+
+	private int[] blanks; //空欄のセル番号。探索深さより前は埋まったセル
+	private int blankCount; //探索開始時の空欄数
+
+	private BoardGeometry geometry; //探索中の盤面サイズの位置関係の表
+	private int fullMask; //全ての数字のビットが立ったマスク
+	private boolean hiddenSingles; //隠れたシングルを探すならtrue
+
+	private int counter; //見つかった解の個数
+	private int limit; //解の個数がこの値に達したら探索を打ち切る
+	private long nodeLimit; //stats.nodesがこの値に達したら探索を打ち切る
+	private boolean aborted; //ノード数の上限で打ち切ったらtrue
+	private int[] solution; //最初に見つかった解
+
+	/**
+	 * コンストラクタ
+	 */
+	public BitSolver() {
+		this(new SearchStats());
+	}
+
+	/**
+	 * コンストラクタ
+	 * 探索の統計を他のソルバと共有する場合に利用する。
+	 * @param stats : SearchStats : 探索の統計の記録先
+	 */
+	BitSolver(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * 解の個数がlimitに達した時点で探索を打ち切るため、解が多い盤面でも計算量が抑えられる。
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit) {
+		if(limit <= 0) {
+			return 0;
+		}
+		SolveEvent event = stats.begin();
+		int count = load(board) ? run(state, limit, Long.MAX_VALUE) : 0;
+		stats.end(event, "BITMASK", board.SIZE, limit, count);
+		return count;
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit, long maxNodes) {
+		if(limit <= 0) {
+			return 0;
+		}
+		SolveEvent event = stats.begin();
+		int count = load(board) ? run(state, limit, maxNodes) : 0;
+		stats.end(event, "BITMASK", board.SIZE, limit, count);
+		return count;
+	}
+
+	/**
+	 * 探索用の状態が持つ解の個数を上限付きで返す
+	 * 探索後の状態は呼び出し前と同じに戻る。
+	 * @param state : SearchState : 解の個数が知りたい状態
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	public int countSolutions(SearchState state, int limit) {
+		if(limit <= 0) {
+			return 0;
+		}
+		return run(state, limit, Long.MAX_VALUE);
+	}
+
+	/**
+	 * 一次元の配列で表された盤面が持つ解の個数を上限付きで返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param values : int[] : セル番号ごとの値[0, size) か SearchState.BLANK
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	public int countSolutions(int size, int[] values, int limit) {
+		return countSolutions(size, values, limit, Long.MAX_VALUE);
+	}
+
+	/**
+	 * 一次元の配列で表された盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param values : int[] : セル番号ごとの値[0, size) か SearchState.BLANK
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	int countSolutions(int size, int[] values, int limit, long maxNodes) {
+		if(limit <= 0) {
+			return 0;
+		}
+		if(state == null || state.SIZE != size) {
+			state = new SearchState(size);
+		}
+		if(!state.load(values)) {
+			return 0;
+		}
+		return run(state, limit, maxNodes);
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	@Override
+	public Board solve(Board board) {
+		SolveEvent event = stats.begin();
+		int count = load(board) ? run(state, 1, Long.MAX_VALUE) : 0;
+		stats.end(event, "BITMASK", board.SIZE, 1, count);
+		if(count == 0) {
+			return null;
+		}
+		int size = state.SIZE;
+		Board answer = new Board(size);
+		for(int i = 0; i < size * size; i++) {
+			try {
+				answer.setCell(i / size + 1, i % size + 1, solution[i]+1);
+			}catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return answer;
+	}
+
+	/**
+	 * 直前の探索で最初に見つかった解を配列に書き出す
+	 * 直前の探索で解が見つかっていない場合の内容は不定。
+	 * @param dest : int[] : 書き出し先(長さSIZE*SIZE以上)
+	 */
+	void copySolution(int[] dest) {
+		System.arraycopy(solution, 0, dest, 0, solution.length);
+	}
+
+	@Override
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 盤面を作業領域に読み込む
+	 * 作業領域は盤面サイズが変わったときのみ確保し直す。
+	 * @param board : Board : 読み込む盤面
+	 * @return boolean : 盤面が数独の制約を満たしていなければ false
+	 */
+	private boolean load(Board board) {
+		if(state == null || state.SIZE != board.SIZE) {
+			state = new SearchState(board.SIZE);
+		}
+		return state.load(board);
+	}
+
+	/**
+	 * 状態の空欄を集めて探索を行う
+	 * @param state : SearchState : 探索する状態
+	 * @param limit : int : 解の個数の上限(この個数に達したら探索を打ち切る)
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 見つかった解の個数(ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	private int run(SearchState state, int limit, long maxNodes) {
+		if(blanks == null || blanks.length != state.cellCount()) {
+			blanks = new int[state.cellCount()];
+			solution = new int[state.cellCount()];
+		}
+		if(geometry == null || geometry.SIZE != state.SIZE) {
+			geometry = BoardGeometry.of(state.SIZE);
+			fullMask = (1 << state.SIZE) - 1;
+			hiddenSingles = state.SIZE >= HIDDENSINGLESIZE;
+		}
+		this.counter = 0;
+		this.limit = limit;
+		this.nodeLimit = maxNodes > Long.MAX_VALUE - stats.nodes ? Long.MAX_VALUE : stats.nodes + maxNodes;
+		this.aborted = false;
+		blankCount = 0;
+		for(int i = 0; i < state.cellCount(); i++) {
+			if(state.get(i) == SearchState.BLANK) {
+				blanks[blankCount++] = i;
+			}
+		}
+		search(state, 0);
+		return aborted && counter < limit ? UNKNOWN : counter;
+	}
+
+	/**
+	 * 候補数が最も少ない空欄を選んで再帰的に探索する
+	 * @param state : SearchState : 探索する状態
+	 * @param depth : int : 埋めた空欄の数
+	 */
+	private void search(SearchState state, int depth) {
+		stats.depth(depth);
+		if(depth == blankCount) {
+			if(counter == 0) {
+				state.copyCells(solution);
+			}
+			counter++;
+			return;
+		}
+
+		//候補が最も少ない空欄を探す(MRV)
+		int best = depth;
+		int bestCandidates = 0;
+		int bestCount = Integer.MAX_VALUE;
+		for(int i = depth; i < blankCount; i++) {
+			int candidates = state.candidates(blanks[i]);
+			int count = Integer.bitCount(candidates);
+			if(count < bestCount) {
+				best = i;
+				bestCandidates = candidates;
+				bestCount = count;
+				if(count <= 1) {
+					break;
+				}
+			}
+		}
+		if(bestCount == 0) {
+			stats.backtracks++;
+			return;
+		}
+		if(bestCount > 1 && hiddenSingles) {
+			int hidden = findHiddenSingle(state, geometry, fullMask);
+			if(hidden == NOPLACE) {
+				stats.backtracks++;
+				return;
+			}
+			if(hidden >= 0) {
+				int forcedCell = hidden / state.SIZE;
+				for(int i = depth; i < blankCount; i++) {
+					if(blanks[i] == forcedCell) {
+						best = i;
+						break;
+					}
+				}
+				bestCandidates = 1 << (hidden % state.SIZE);
+			}
+		}
+
+		int cell = blanks[best];
+		blanks[best] = blanks[depth];
+		blanks[depth] = cell;
+
+		int mark = state.mark();
+		int candidates = bestCandidates;
+		while(candidates != 0) {
+			int bit = candidates & -candidates;
+			candidates ^= bit;
+
+			state.assign(cell, Integer.numberOfTrailingZeros(bit));
+			if(++stats.nodes >= nodeLimit) {
+				aborted = true;
+			}
+			search(state, depth + 1);
+			state.undo(mark);
+
+			if(counter >= limit || aborted) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * ユニット内で置き場所が1つしかない数字(隠れたシングル)を探す
+	 * ユニットごとに空欄の候補を1回以上・2回以上現れた数字に分けて集計するため、
+	 * 1つのユニットはセルの数に比例する時間で調べられる。
+	 * ParallelSolverのタスク内の逐次探索からも利用する。
+	 * @param state : SearchState : 探索する状態
+	 * @param geometry : BoardGeometry : 盤面サイズの位置関係の表
+	 * @param fullMask : int : 全ての数字のビットが立ったマスク
+	 * @return int : 見つかればセル番号*盤面サイズ+数字の番号、置き場所のない数字があればNOPLACE、どちらでもなければNOHIDDENSINGLE
+	 */
+	static int findHiddenSingle(SearchState state, BoardGeometry geometry, int fullMask) {
+		for(int unit = 0; unit < geometry.UNITS; unit++) {
+			int missing = fullMask & ~state.used(unit);
+			if(missing == 0) {
+				continue;
+			}
+			int[] cells = geometry.unitCells(unit);
+			int once = 0;
+			int twice = 0;
+			for(int cell : cells) {
+				if(state.get(cell) == SearchState.BLANK) {
+					int candidates = state.candidates(cell);
+					twice |= once & candidates;
+					once |= candidates;
+				}
+			}
+			if((missing & ~once) != 0) {
+				return NOPLACE;
+			}
+			int single = missing & ~twice;
+			if(single != 0) {
+				int bit = single & -single;
+				for(int cell : cells) {
+					if(state.get(cell) == SearchState.BLANK && (state.candidates(cell) & bit) != 0) {
+						return cell * state.SIZE + Integer.numberOfTrailingZeros(bit);
+					}
+				}
+			}
+		}
+		return NOHIDDENSINGLE;
+	}
+}
@@ -11,6 +11,15 @@ public class Board {
 	private int[][] cells; //盤面そのもの。値は[0, SIZE)
 	private int[][] defaultCells; //盤面の初期値を記憶する(初期盤面と人の入力を区別する用)
 	
+	private final BoardGeometry geometry; //盤面サイズごとに共有される位置関係の表
+	private int[] unitCounts; //ユニット(行・列・格子)ごとの数字の個数。[ユニット番号 * SIZE + 数字]
+	private int conflicts; //ユニット内で重複している数字の個数
+	private int blanks; //空欄のセルの数
+	private final CandidateMarks marks; //空欄ごとの候補の数字
+	private byte[] solution; //PuzzleCodec.encodeBoardで詰めた解答(照合しない場合はnull)
+	private int wrongCells; //解答と異なる値が入っているセルの数
+	private int mistakes; //解答と異なる値を入力した回数の累計
+	
 	/**
 	 * コンストラクタ
 	 */
@@ -22,6 +31,7 @@ public class Board {
 		}
 		SIZE = size;
 		SIZESQRT = sizeSqrt;
+		geometry = BoardGeometry.of(size);
 		cells = new int[SIZE][SIZE];
 		//初期化
 		for(int row = 0; row < SIZE; row++) {
@@ -29,6 +39,10 @@ public class Board {
 				cells[row][column] = INITNUM;
 			}
 		}
+		unitCounts = new int[geometry.UNITS * SIZE];
+		conflicts = 0;
+		blanks = SIZE * SIZE;
+		marks = new CandidateMarks(geometry);
 		registerCells();
 	}
 	
@@ -40,12 +54,20 @@ public class Board {
 	public Board(Board board) {
 		this.SIZE = board.SIZE;
 		this.SIZESQRT = board.SIZESQRT;
+		this.geometry = board.geometry;
 		this.cells = new int[board.SIZE][board.SIZE];
 		for(int row = 0; row < board.SIZE; row++) {
 			for(int column = 0; column < board.SIZE; column++) {
 				cells[row][column] = board.cells[row][column];
 			}
 		}
+		this.unitCounts = board.unitCounts.clone();
+		this.conflicts = board.conflicts;
+		this.blanks = board.blanks;
+		this.marks = new CandidateMarks(board.marks);
+		this.solution = board.solution;
+		this.wrongCells = board.wrongCells;
+		this.mistakes = board.mistakes;
 		registerCells();
 	}
 	
@@ -57,6 +79,36 @@ public class Board {
 		return new Board(this);
 	}
 	
+	/**
+	 * 現盤面を探索用の状態に書き出す
+	 * @return SearchState : 現盤面と同じ値を持つ状態(数独の制約を満たしていない場合はnull)
+	 */
+	public SearchState exportState() {
+		SearchState state = new SearchState(SIZE);
+		if(!state.load(this)) {
+			return null;
+		}
+		return state;
+	}
+	
+	/**
+	 * 探索用の状態の値を現盤面に読み込む
+	 * 問題盤面として登録されたセルも上書きされる。
+	 * @param state : SearchState : 読み込む状態(サイズが一致している必要がある)
+	 */
+	public void importState(SearchState state) {
+		if(state.SIZE != SIZE) {
+			System.err.println("盤面のサイズが一致しません");
+			return;
+		}
+		for(int row = 0; row < SIZE; row++) {
+			for(int column = 0; column < SIZE; column++) {
+				int value = state.get(row * SIZE + column);
+				put(row, column, value == SearchState.BLANK ? INITNUM : value);
+			}
+		}
+	}
+	
 	/**
 	 * 現盤面を問題盤面として登録する。
 	 * 登録された盤面はdefaultCellsに格納される。
@@ -71,8 +123,38 @@ public class Board {
 		}
 	}
 	
+	/**
+	 * 入力を照合する解答を設定する
+	 * 設定後はsetCellのたびに入力したセルの値のみを解答と比べるため、1手の照合は定数時間で終わる。
+	 * @param solution : byte[] : PuzzleCodec.encodeBoardで詰めた解答(照合をやめる場合はnull)
+	 */
+	public void attachSolution(byte[] solution) {
+		this.solution = solution;
+		wrongCells = 0;
+		mistakes = 0;
+		if(solution == null) {
+			return;
+		}
+		for(int row = 0; row < SIZE; row++) {
+			for(int column = 0; column < SIZE; column++) {
+				if(isWrong(row, column, cells[row][column])) {
+					wrongCells++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 照合する解答が設定されているか判定する
+	 * @return boolean : 設定されていればtrue
+	 */
+	public boolean hasSolution() {
+		return solution != null;
+	}
+	
 	/**
 	 * 盤面のセル内に値を代入する
+	 * 解答が設定されていて値が解答と異なる場合は、間違えた回数を増やす。
 	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
 	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
 	 * @param cellData : 代入する値[1, 盤面の一辺の長さ]
@@ -102,7 +184,24 @@ public class Board {
 //			return;
 			throw new Board.RejectedPosionException();
 		}
-		cells[rowIndex-1][colIndex-1] = cellData-1;
+		put(rowIndex-1, colIndex-1, cellData-1);
+		if(isWrong(rowIndex-1, colIndex-1, cellData-1)) {
+			mistakes++;
+		}
+	}
+	
+	/**
+	 * 記録された手を戻す・やり直すときにセルの値を書き換える
+	 * 問題盤面として登録されたセルは書き換えず、間違えた回数も数えない。
+	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
+	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
+	 * @param cellData : 値[1, 盤面の一辺の長さ](空欄は0)
+	 */
+	void restoreCell(int rowIndex, int colIndex, int cellData) {
+		if(defaultCells[rowIndex-1][colIndex-1] != INITNUM) {
+			return;
+		}
+		put(rowIndex-1, colIndex-1, cellData == 0 ? INITNUM : cellData-1);
 	}
 	
 	/**
@@ -119,176 +218,145 @@ public class Board {
 			System.err.println("colIndex : " + colIndex + " : out of range!");
 			return;
 		}
-		cells[rowIndex-1][colIndex-1] = INITNUM;
+		put(rowIndex-1, colIndex-1, INITNUM);
 		
 	}
 	
 	/**
-	 * 数独の制約に現段階で満たしているか判定する
-	 * @return boolean : 数独の条件を満たしていない部分があれば false
+	 * セルに値を書き込み、ユニットごとの数字の個数・重複数・空欄数・候補を更新する
+	 * 変更のあったセルが属する3つのユニットのみを更新するため、候補の更新を含めてもユニットのセル数に比例する時間で終わる。
+	 * @param row : int : 行番号[0, SIZE)
+	 * @param column : int : 列番号[0, SIZE)
+	 * @param value : int : 書き込む値[0, SIZE) か INITNUM
 	 */
-	public boolean isCorrect() {
-
-		boolean correct = true;
-		
-		//水平方向（行）の判定
-		for(int row = 0; row < cells.length; row++) {
-			boolean[] check = new boolean[SIZE];
-			for(int i = 0; i < SIZE; i++) {
-				check[i] = false;
-			}
-			
-			for(int i = 0; i < SIZE; i++) {
-				int cell = cells[row][i];
-				if(cell == INITNUM) { // 行に空欄がある場合
-					continue;
-				}if(check[cell]) { // 行内の数値に重複があるとき
-					return false;
-				}
-				check[cell] = true;
-			}
+	private void put(int row, int column, int value) {
+		int old = cells[row][column];
+		if(old == value) {
+			return;
 		}
-		//垂直方向(列)の判定
-		for(int col = 0; col < cells[0].length; col++) {
-			boolean[] check = new boolean[SIZE];
-			for(int i = 0; i < SIZE; i++) {
-				check[i] = false;
-			}
-			
-			for(int i = 0; i < SIZE; i++) {
-				int cell = cells[i][col];
-				if(cell == INITNUM) { // 列に空欄がある場合
-					continue;
-				}if(check[cell]) { // 列内の数値に重複があるとき
-					return false;
-				}
-				check[cell] = true;
-			}
+		int cell = row * SIZE + column;
+		if(isWrong(row, column, old)) {
+			wrongCells--;
 		}
-		//格子ごとの判定
-		int sqrtSize = SIZESQRT;
-		for(int row = 0; row < SIZE; row += sqrtSize) {
-			for(int col = 0; col < SIZE; col += sqrtSize) {
-				//格子の(0, 0)位置
-				
-				boolean[] check = new boolean[SIZE];
-				for(int i = 0; i < SIZE; i++) {
-					check[i] = false;
-				}
-				
-				for(int i = 0; i < sqrtSize; i++) {
-					for(int j = 0; j < sqrtSize; j++) {
-						int cell = cells[row + i][col + j];
-						if(cell == INITNUM) { // 格子に空欄がある場合
-							continue;
-						}if(check[cell]) { // 格子内の数値に重複があるとき
-							return false;
-						}
-						check[cell] = true;
-					}
-				}
-
-			}
+		if(isWrong(row, column, value)) {
+			wrongCells++;
 		}
-		
-		return correct;
+		int rowUnit = geometry.rowOf(cell);
+		int colUnit = SIZE + geometry.colOf(cell);
+		int boxUnit = 2 * SIZE + geometry.boxOf(cell);
+		if(old == INITNUM) {
+			blanks--;
+			marks.fill(cell);
+		}else {
+			removeCount(rowUnit * SIZE + old);
+			removeCount(colUnit * SIZE + old);
+			removeCount(boxUnit * SIZE + old);
+		}
+		if(value == INITNUM) {
+			blanks++;
+			marks.clear(cell);
+		}else {
+			addCount(rowUnit * SIZE + value);
+			addCount(colUnit * SIZE + value);
+			addCount(boxUnit * SIZE + value);
+		}
+		cells[row][column] = value;
 	}
 	
 	/**
-	 * 数独が完成しているかを判定する
-	 * @return　boolean : 数独の条件を全て満たして入れば true
+	 * 値が解答と異なるか判定する
+	 * @param row : int : 行番号[0, SIZE)
+	 * @param column : int : 列番号[0, SIZE)
+	 * @param value : int : 値[0, SIZE) か INITNUM
+	 * @return boolean : 解答が設定されていて、空欄でない値が解答と異なればtrue
 	 */
-	public boolean isSuccess() {
-		if(!isFilled()) {
+	private boolean isWrong(int row, int column, int value) {
+		return solution != null && value != INITNUM && PuzzleCodec.cellAt(solution, SIZE, row * SIZE + column) != value + 1;
+	}
+	
+	/**
+	 * セルが問題盤面として登録されているか判定する
+	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
+	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
+	 * @return boolean : 登録されている(初期値の)セルならtrue(範囲外はfalse)
+	 */
+	public boolean isClue(int rowIndex, int colIndex) {
+		if(!(0 < rowIndex && rowIndex <= SIZE) || !(0 < colIndex && colIndex <= SIZE)) {
 			return false;
 		}
-		
-		boolean correct = true;
-		
-		//水平方向（行）の判定
-		for(int row = 0; row < cells.length; row++) {
-			boolean[] check = new boolean[SIZE];
-			for(int i = 0; i < SIZE; i++) {
-				check[i] = false;
-			}
-			
-			for(int i = 0; i < SIZE; i++) {
-				int cell = cells[row][i];
-//				if(cell == INITNUM) { // 行に空欄がある場合
-//					continue;
-//				}if(check[cell]) { // 行内の数値に重複があるとき
-//					return false;
-//				}
-				check[cell] = true;
-			}
-			
-			// 行内に全ての数字が存在するかチェック
-			for(boolean tf : check) {
-				if(!tf) {
-					correct = false;
-				}
-			}
+		return defaultCells[rowIndex-1][colIndex-1] != INITNUM;
+	}
+	
+	/**
+	 * セルの値が解答と異なるか判定する
+	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
+	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
+	 * @return boolean : 解答が設定されていて、空欄でない値が解答と異なればtrue
+	 */
+	public boolean isMistake(int rowIndex, int colIndex) {
+		if(!(0 < rowIndex && rowIndex <= SIZE) || !(0 < colIndex && colIndex <= SIZE)) {
+			return false;
 		}
-		//垂直方向(列)の判定
-		for(int col = 0; col < cells[0].length; col++) {
-			boolean[] check = new boolean[SIZE];
-			for(int i = 0; i < SIZE; i++) {
-				check[i] = false;
-			}
-			
-			for(int i = 0; i < SIZE; i++) {
-				int cell = cells[i][col];
-//				if(cell == INITNUM) { // 列に空欄がある場合
-//					continue;
-//				}if(check[cell]) { // 列内の数値に重複があるとき
-//					return false;
-//				}
-				check[cell] = true;
-			}
-
-			// 列内に全ての数字が存在するかチェック
-			for(boolean tf : check) {
-				if(!tf) {
-					correct = false;
-				}
-			}
-			
+		return isWrong(rowIndex-1, colIndex-1, cells[rowIndex-1][colIndex-1]);
+	}
+	
+	/**
+	 * 解答と異なる値が入っているセルの数を返す
+	 * @return int : セルの数(解答が設定されていなければ0)
+	 */
+	public int countWrongCells() {
+		return wrongCells;
+	}
+	
+	/**
+	 * 解答と異なる値を入力した回数の累計を返す
+	 * @return int : 回数(解答が設定されていなければ0)
+	 */
+	public int getMistakes() {
+		return mistakes;
+	}
+	
+	/**
+	 * ユニット内の数字の個数を1つ増やす。既に存在すれば重複数も増やし、なければ候補から取り除く。
+	 * @param index : int : unitCountsの添字
+	 */
+	private void addCount(int index) {
+		if(unitCounts[index] > 0) {
+			conflicts++;
+		}else {
+			marks.digitAdded(index / SIZE, index % SIZE);
 		}
-		
-		//格子ごとの判定
-		int sqrtSize = SIZESQRT;
-		for(int row = 0; row < SIZE; row += sqrtSize) {
-			for(int col = 0; col < SIZE; col += sqrtSize) {
-				//格子の(0, 0)位置
-				
-				boolean[] check = new boolean[SIZE];
-				for(int i = 0; i < SIZE; i++) {
-					check[i] = false;
-				}
-				
-				for(int i = 0; i < sqrtSize; i++) {
-					for(int j = 0; j < sqrtSize; j++) {
-						int cell = cells[row + i][col + j];
-//						if(cell == INITNUM) { // 格子に空欄がある場合
-//							continue;
-//						}if(check[cell]) { // 格子内の数値に重複があるとき
-//							return false;
-//						}
-						check[cell] = true;
-					}
-				}
-
-				// 格子内に全ての数字が存在するかチェック
-				for(boolean tf : check) {
-					if(!tf) {
-						correct = false;
-					}
-				}
-			}
+		unitCounts[index]++;
+	}
+	
+	/**
+	 * ユニット内の数字の個数を1つ減らす。重複していれば重複数も減らし、なくなれば候補に戻す。
+	 * @param index : int : unitCountsの添字
+	 */
+	private void removeCount(int index) {
+		unitCounts[index]--;
+		if(unitCounts[index] > 0) {
+			conflicts--;
+		}else {
+			marks.digitRemoved(index / SIZE, index % SIZE);
 		}
-
-		return correct;
-		
+	}
+	
+	/**
+	 * 数独の制約に現段階で満たしているか判定する
+	 * @return boolean : 数独の条件を満たしていない部分があれば false
+	 */
+	public boolean isCorrect() {
+		return conflicts == 0;
+	}
+	
+	/**
+	 * 数独が完成しているかを判定する
+	 * 全て埋まっていて重複がなければ、全てのユニットに全ての数字が1つずつ存在する。
+	 * @return　boolean : 数独の条件を全て満たして入れば true
+	 */
+	public boolean isSuccess() {
+		return blanks == 0 && conflicts == 0;
 	}
 	
 	/**
@@ -296,14 +364,7 @@ public class Board {
 	 * @return boolean : 全て埋まっていればtrue
 	 */
 	public boolean isFilled() {
-		for(int[] array : cells) {
-			for(int cell : array) {
-				if(cell == INITNUM) {
-					return false;
-				}
-			}
-		}
-		return true;
+		return blanks == 0;
 	}
 	
 	/**
@@ -311,16 +372,7 @@ public class Board {
 	 * @return int : 空欄セルの数
 	 */
 	public int countBlanks() {
-		int counter = 0;
-		for(int[] array : cells) {
-			for(int cell : array) {
-				if(cell == INITNUM) {
-					counter++;
-				}
-			}
-		}
-//		System.out.println(counter);
-		return counter;
+		return blanks;
 	}
 	
 	/**
@@ -341,105 +393,71 @@ public class Board {
 		return this.cells[rowIndex-1][colIndex-1] == INITNUM;
 	}
 	
+	/**
+	 * 盤面のセル内の値を返す。
+	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
+	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
+	 * @return int : セルの値[1, 盤面の一辺の長さ]（空白の場合は0）
+	 */
+	public int getCell(int rowIndex, int colIndex) {
+		if(!(0 < rowIndex && rowIndex <= SIZE)) {
+			System.err.println("rowIndex : " + rowIndex + " : out of range!");
+			return 0;
+		}
+		if(!(0 < colIndex && colIndex <= SIZE)) {
+			System.err.println("colIndex : " + colIndex + " : out of range!");
+			return 0;
+		}
+		return this.cells[rowIndex-1][colIndex-1] + 1;
+	}
+
+	/**
+	 * 空欄のセルの候補の数字を返す
+	 * 候補は値の書き換えのたびに差分で更新されているため、計算し直さずに返す。
+	 * @param rowIndex : 行のインデックス　[1, 盤面の一辺の長さ]
+	 * @param colIndex : 列のインデックス [1, 盤面の一辺の長さ]
+	 * @return int : 候補の数字のビット(数字nは1 << (n-1)。埋まったセル・範囲外は0)
+	 */
+	public int getCandidates(int rowIndex, int colIndex) {
+		if(!(0 < rowIndex && rowIndex <= SIZE) || !(0 < colIndex && colIndex <= SIZE)) {
+			return 0;
+		}
+		return marks.get((rowIndex-1) * SIZE + (colIndex-1));
+	}
+	
+	/**
+	 * 次に確定できるセルを1つ探す
+	 * @return CandidateMarks.Hint : 見つかったヒント(確定できるセルがなければnull)
+	 */
+	public CandidateMarks.Hint findHint() {
+		return marks.findHint();
+	}
+
 	/**
 	 * 盤面内の残りの空欄数を返す
 	 * @return　int : 空欄数
 	 */
 	public int countBlank() {
-		int blankCells = 0;
-		for(int[] array : cells) {
-			for(int cell : array) {
-				if(cell == INITNUM) {
-					blankCells++;
-				}
-			}
-		}
-		
-		return blankCells;
+		return blanks;
 	}
 	
 	/**
 	 * 盤面を整形して表示する
+	 * 解答が設定されている場合は、解答と異なる入力を赤で表示する。
+	 * 繰り返し表示する場合は、バッファを使い回すBoardRendererを利用する。
 	 */
 	public void printBoard() {
-		// ANSIエスケープコードによる装飾
-		//文字色一覧
-        String red    = "\u001b[00;31m";
-        String green  = "\u001b[00;32m";
-        String yellow = "\u001b[00;33m";
-        String purple = "\u001b[00;34m";
-        String pink   = "\u001b[00;35m";
-        String cyan   = "\u001b[00;36m";
-        //特殊処理
-        String bold   = "\u001b[01m";
-        String uline  = "\u001b[04m";
-        String end    = "\u001b[00m";
-        
-        
-		// 表示
-		System.out.println();
-		System.out.print(" |");
-		for(int col = 0; col < SIZE; col++) {
-			// 格子の明示するための処理（タテ）
-			if(col%SIZESQRT == 0 && col != 0) {
-				System.out.print(" ");
-			}
-			System.out.print(col+1);
-		}
-		System.out.println(" ");
-		// ヘッダーの罫線（ヨコ）
-		System.out.print("-+");
-		for(int col = 0; col < SIZE; col++) {
-			// 格子の明示するための処理（タテ）
-			if(col%SIZESQRT == 0 && col != 0) {
-				System.out.print("+");
-			}
-			System.out.print("-");
-		}
-		System.out.println("+");
-		for(int row = 0; row < SIZE; row++) {
-			// 格子の明示するための処理（ヨコ）
-			if(row%SIZESQRT == 0 && row != 0) {
-				System.out.print(" +");
-				for(int col = 0; col < SIZE; col++) {
-					// 格子の明示するための処理（タテ）
-					if(col%SIZESQRT == 0 && col != 0) {
-						System.out.print("+");
-					}
-					System.out.print("-");
-				}
-				System.out.println("+");
-			}
-			System.out.print(row+1 + "|");
-			for(int col = 0; col < SIZE; col++) {
-				// 格子の明示するための処理（タテ）
-				if(col%SIZESQRT == 0 && col != 0) {
-					System.out.print("|");
-				}
-				if(cells[row][col] == INITNUM) {
-					System.out.print(".");
-				}else {
-					if(defaultCells[row][col] != INITNUM) {
-						System.out.print(green + bold + uline);
-						System.out.print(cells[row][col]+1);
-						System.out.print(end);
-						
-					}else {
-						System.out.print(cells[row][col]+1);
-					}
-				}
-			}
-			System.out.println("|");
-		}
-		System.out.print("　+");
-		for(int col = 0; col < SIZE; col++) {
-			// 格子の明示するための処理（タテ）
-			if(col%SIZESQRT == 0 && col != 0) {
-				System.out.print("+");
-			}
-			System.out.print("-");
-		}
-		System.out.println("+");
+		new BoardRenderer(System.out, BoardRenderer.Mode.FULL).render(this, false);
+	}
+	
+	/**
+	 * 空欄ごとの候補(ペンシルマーク)を含めて盤面を整形して表示する
+	 * 1つのセルを格子と同じ形の小さな格子で表し、数字nの候補はその(n-1)番目の位置に表示する。
+	 * 埋まっているセルは値のみを中央の行に表示し、解答が設定されていれば解答と異なる入力を赤で表示する。
+	 * 候補は1文字で表すため、10以上の数字はPuzzleFormatと同じくA, B, ...で表示する。
+	 */
+	public void printCandidates() {
+		new BoardRenderer(System.out, BoardRenderer.Mode.FULL).render(this, true);
 	}
 	
 	/**
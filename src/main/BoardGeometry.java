@@ -0,0 +1,125 @@
+package main;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 盤面サイズごとの位置関係の表
+ * セル番号(行 * SIZE + 列)から行・列・格子への変換表と、
+ * 同じ行・列・格子に属するセル(ピア)の一覧を保持する。
+ * 表は盤面サイズごとに一度だけ作成され、全てのインスタンスで共有される。
+ */
+public final class BoardGeometry {
+	private static final ConcurrentHashMap<Integer, BoardGeometry> CACHE = new ConcurrentHashMap<>();
+
+	public final int SIZE; //盤面の一辺の長さ
+	public final int SIZESQRT; //格子の一辺の長さ
+	public final int CELLS; //セルの数(SIZE * SIZE)
+	public final int UNITS; //行・列・格子の数の合計(3 * SIZE)
+
+	private final int[] rowOf; //セル番号から行番号への変換表
+	private final int[] colOf; //セル番号から列番号への変換表
+	private final int[] boxOf; //セル番号から格子番号への変換表
+	private final int[][] unitCells; //ユニット(行・列・格子)ごとのセル番号
+	private final int[][] peers; //セルごとのピアのセル番号
+
+	/**
+	 * 盤面サイズに対応する表を返す
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @return BoardGeometry : 共有される表
+	 */
+	public static BoardGeometry of(int size) {
+		return CACHE.computeIfAbsent(size, BoardGeometry::new);
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 */
+	private BoardGeometry(int size) {
+		int sizeSqrt = (int)Math.sqrt((double)size);
+		SIZE = size;
+		SIZESQRT = sizeSqrt;
+		CELLS = size * size;
+		UNITS = 3 * size;
+
+		rowOf = new int[CELLS];
+		colOf = new int[CELLS];
+		boxOf = new int[CELLS];
+		unitCells = new int[UNITS][size];
+		int[] filled = new int[UNITS];
+		for(int cell = 0; cell < CELLS; cell++) {
+			rowOf[cell] = cell / size;
+			colOf[cell] = cell % size;
+			boxOf[cell] = (rowOf[cell] / sizeSqrt) * sizeSqrt + colOf[cell] / sizeSqrt;
+			int rowUnit = rowOf[cell];
+			int colUnit = size + colOf[cell];
+			int boxUnit = 2 * size + boxOf[cell];
+			unitCells[rowUnit][filled[rowUnit]++] = cell;
+			unitCells[colUnit][filled[colUnit]++] = cell;
+			unitCells[boxUnit][filled[boxUnit]++] = cell;
+		}
+
+		//ピアは同じ行(SIZE-1)・列(SIZE-1)・格子のうち行・列が異なるもの((SQRT-1)^2)
+		int peerCount = 2 * (size - 1) + (sizeSqrt - 1) * (sizeSqrt - 1);
+		peers = new int[CELLS][peerCount];
+		for(int cell = 0; cell < CELLS; cell++) {
+			int k = 0;
+			for(int other = 0; other < CELLS; other++) {
+				if(other == cell) {
+					continue;
+				}
+				if(rowOf[other] == rowOf[cell] || colOf[other] == colOf[cell] || boxOf[other] == boxOf[cell]) {
+					peers[cell][k++] = other;
+				}
+			}
+		}
+	}
+
+	/**
+	 * セルの行番号を返す
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @return int : 行番号[0, SIZE)
+	 */
+	public int rowOf(int cell) {
+		return rowOf[cell];
+	}
+
+	/**
+	 * セルの列番号を返す
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @return int : 列番号[0, SIZE)
+	 */
+	public int colOf(int cell) {
+		return colOf[cell];
+	}
+
+	/**
+	 * セルの格子番号を返す
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @return int : 格子番号[0, SIZE)
+	 */
+	public int boxOf(int cell) {
+		return boxOf[cell];
+	}
+
+	/**
+	 * ユニットに属するセルを返す
+	 * ユニット番号は行が[0, SIZE)、列が[SIZE, 2*SIZE)、格子が[2*SIZE, 3*SIZE)。
+	 * 返す配列は共有されるため変更しないこと。
+	 * @param unit : int : ユニット番号[0, UNITS)
+	 * @return int[] : セル番号の配列
+	 */
+	public int[] unitCells(int unit) {
+		return unitCells[unit];
+	}
+
+	/**
+	 * セルのピア(同じ行・列・格子に属する他のセル)を返す
+	 * 返す配列は共有されるため変更しないこと。
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @return int[] : ピアのセル番号の配列
+	 */
+	public int[] peers(int cell) {
+		return peers[cell];
+	}
+}
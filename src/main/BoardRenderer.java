@@ -0,0 +1,400 @@
+package main;
+
+import java.io.PrintStream;
+
+/**
+ * 盤面の表示
+ * 1フレームを使い回すバッファに組み立て、出力先へは1度に書き出す。
+ * 装飾(ANSIエスケープコード)は装飾が変わるときのみ出力するため、同じ装飾のセルが続く場合は1度で済む。
+ * DIFFではANSIのカーソル移動を使い、最初のフレームのみ画面を消去して全体を描画し、
+ * 以降は前のフレームから表示が変わったセルのみを書き換えてから、カーソルを盤面の下に戻してその下を消去する。
+ * DIFFは盤面が画面の先頭から動かないことを前提とするため、盤面の下に出力する行は画面に収まる必要がある。
+ * インスタンスはバッファを持つため、スレッド間で共有しないこと。
+ */
+public class BoardRenderer {
+	public static final String MODEPROPERTY = "sudoku.render"; //表示方法を指定するシステムプロパティ
+
+	private static final int PLAIN = 0; //装飾なし
+	private static final int CLUE = 1; //問題盤面の数字(緑・太字・下線)
+	private static final int WRONG = 2; //解答と異なる入力(赤・太字)
+	private static final String[] STYLES = {"\u001b[0m", "\u001b[0;32;1;4m", "\u001b[0;31;1m"}; //装飾ごとのエスケープコード
+	private static final String CLEARSCREEN = "\u001b[H\u001b[2J"; //カーソルを左上に移動して画面を消去する
+	private static final String CLEARBELOW = "\u001b[J"; //カーソルから下を消去する
+
+	/**
+	 * 表示方法
+	 */
+	public enum Mode {
+		FULL, //毎回盤面全体を出力する
+		DIFF; //変わったセルのみをカーソル移動で書き換える
+	}
+
+	private final PrintStream out; //出力先
+	private final Mode mode; //表示方法
+	private final StringBuilder frame = new StringBuilder(); //フレームを組み立てるバッファ
+	private int style = PLAIN; //バッファの末尾の装飾
+
+	private int size; //レイアウトを作った盤面の一辺の長さ(未作成なら0)
+	private int sizeSqrt; //格子の一辺の長さ
+	private int digits; //行番号の桁数
+	private int cellWidth; //通常の表示のセルの幅
+	private String[] numbers; //値ごとの文字列
+	private String boardHeader; //通常の表示の見出しと上端の罫線
+	private String boardSeparator; //通常の表示の格子の間の罫線
+	private String candidateHeader; //候補付きの表示の見出しと上端の罫線
+	private String candidateSeparator; //候補付きの表示の格子の間の罫線
+	private String candidateSpacer; //候補付きの表示の格子内のセルの間の行
+	private String candidateFooter; //候補付きの表示の下端の罫線と注記
+
+	private long[] shown; //DIFFで画面に表示しているセルごとの状態(nullなら次は全体を描画する)
+	private boolean shownCandidates; //DIFFで画面に表示している盤面が候補付きならtrue
+	private int footerLine; //DIFFで盤面の下の行の番号(1始まり)
+
+	/**
+	 * コンストラクタ
+	 * @param out : PrintStream : 出力先
+	 * @param mode : Mode : 表示方法
+	 */
+	public BoardRenderer(PrintStream out, Mode mode) {
+		this.out = out;
+		this.mode = mode;
+	}
+
+	/**
+	 * システムプロパティで指定された表示方法を返す
+	 * @return Mode : 表示方法(指定がないか不正な場合はFULL)
+	 */
+	public static Mode configuredMode() {
+		try {
+			return Mode.valueOf(System.getProperty(MODEPROPERTY, Mode.FULL.name()).toUpperCase());
+		}catch(IllegalArgumentException e) {
+			return Mode.FULL;
+		}
+	}
+
+	/**
+	 * 表示方法を返す
+	 * @return Mode : 表示方法
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * 次のフレームで盤面全体を描画し直す
+	 * DIFFで画面が他の出力で崩れた場合に呼ぶ。
+	 */
+	public void invalidate() {
+		shown = null;
+	}
+
+	/**
+	 * 盤面を1フレーム表示する
+	 * 解答が設定されている場合は、解答と異なる入力を赤で表示する。
+	 * 候補付きの表示では1つのセルを格子と同じ形の小さな格子で表し、数字nの候補はその(n-1)番目の位置に表示する。
+	 * 埋まっているセルは値のみを中央の行に表示する。
+	 * 候補は1文字で表すため、10以上の数字はPuzzleFormatと同じくA, B, ...で表示する。
+	 * @param board : Board : 表示する盤面
+	 * @param candidates : boolean : 空欄ごとの候補(ペンシルマーク)を含めて表示するならtrue
+	 */
+	public void render(Board board, boolean candidates) {
+		layout(board.SIZE);
+		frame.setLength(0);
+		style = PLAIN;
+		if(mode == Mode.DIFF && shown != null && shownCandidates == candidates) {
+			appendChanges(board, candidates);
+		}else {
+			if(mode == Mode.DIFF) {
+				frame.append(CLEARSCREEN);
+			}
+			if(candidates) {
+				appendCandidates(board);
+			}else {
+				appendBoard(board);
+			}
+			if(mode == Mode.DIFF) {
+				remember(board, candidates);
+			}
+		}
+		out.append(frame);
+		out.flush();
+	}
+
+	/**
+	 * 盤面サイズに合わせて、セルによらない文字列を作る
+	 */
+	private void layout(int size) {
+		if(this.size == size) {
+			return;
+		}
+		this.size = size;
+		sizeSqrt = (int)Math.sqrt((double)size);
+		digits = Integer.toString(size).length();
+		// 10以上の数字を含む盤面では、セルの幅を最大の数字の桁数に揃える
+		cellWidth = digits == 1 ? 1 : digits + 1;
+		numbers = new String[size + 1];
+		for(int value = 0; value <= size; value++) {
+			numbers[value] = Integer.toString(value);
+		}
+		String labelPad = " ".repeat(digits);
+
+		StringBuilder header = new StringBuilder("\n").append(labelPad).append('|');
+		StringBuilder ruler = new StringBuilder();
+		for(int col = 0; col < size; col++) {
+			// 格子の明示するための処理（タテ）
+			if(col%sizeSqrt == 0 && col != 0) {
+				header.append(' ');
+				ruler.append('+');
+			}
+			header.append(" ".repeat(cellWidth - numbers[col+1].length())).append(numbers[col+1]);
+			ruler.append("-".repeat(cellWidth));
+		}
+		ruler.append("+\n");
+		boardHeader = header.append(" \n").append("-".repeat(digits)).append('+').append(ruler).toString();
+		boardSeparator = labelPad + "+" + ruler;
+
+		// 候補付きの表示では、セルは格子の一辺の文字数で表し、セルの間と格子の両端に空白を入れる
+		int boxWidth = sizeSqrt * (sizeSqrt + 1) + 1;
+		StringBuilder boxRuler = new StringBuilder();
+		StringBuilder spacer = new StringBuilder(labelPad).append('|');
+		for(int box = 0; box < sizeSqrt; box++) {
+			boxRuler.append("-".repeat(boxWidth)).append('+');
+			spacer.append(" ".repeat(boxWidth)).append('|');
+		}
+		boxRuler.append('\n');
+		header = new StringBuilder("\n").append(labelPad).append('|');
+		for(int col = 0; col < size; col++) {
+			String text = numbers[col+1];
+			int left = (sizeSqrt - text.length()) / 2;
+			header.append(" ".repeat(left + 1)).append(text).append(" ".repeat(sizeSqrt - text.length() - left));
+			if(col%sizeSqrt == sizeSqrt-1) {
+				header.append(" |");
+			}
+		}
+		candidateHeader = header.append('\n').append("-".repeat(digits)).append('+').append(boxRuler).toString();
+		candidateSeparator = labelPad + "+" + boxRuler;
+		candidateSpacer = spacer.append('\n').toString();
+		candidateFooter = candidateSeparator + (size > 9 ? "候補の10以上の数字はA(10), B(11), ...で表示しています\n" : "");
+		shown = null;
+	}
+
+	/**
+	 * 通常の表示の盤面全体を追加する
+	 */
+	private void appendBoard(Board board) {
+		frame.append(boardHeader);
+		for(int row = 0; row < size; row++) {
+			// 格子の明示するための処理（ヨコ）
+			if(row%sizeSqrt == 0 && row != 0) {
+				frame.append(boardSeparator);
+			}
+			appendSpaces(digits - numbers[row+1].length());
+			append(numbers[row+1], PLAIN);
+			append("|", PLAIN);
+			for(int col = 0; col < size; col++) {
+				// 格子の明示するための処理（タテ）
+				if(col%sizeSqrt == 0 && col != 0) {
+					append("|", PLAIN);
+				}
+				appendCell(board, row, col);
+			}
+			append("|\n", PLAIN);
+		}
+		frame.append(boardSeparator);
+	}
+
+	/**
+	 * 通常の表示の1セルを追加する(右詰めでセルの幅に揃える)
+	 */
+	private void appendCell(Board board, int row, int col) {
+		int value = board.getCell(row+1, col+1);
+		String text = value == 0 ? "." : numbers[value];
+		//装飾は数字のみにかけ、桁揃えの空白にはかけない
+		appendSpaces(cellWidth - text.length());
+		append(text, styleOf(board, row, col, value));
+	}
+
+	/**
+	 * 候補付きの表示の盤面全体を追加する
+	 */
+	private void appendCandidates(Board board) {
+		frame.append(candidateHeader);
+		int middle = sizeSqrt / 2;
+		for(int row = 0; row < size; row++) {
+			// 格子の明示するための処理（ヨコ）
+			if(row%sizeSqrt == 0 && row != 0) {
+				frame.append(candidateSeparator);
+			}else if(row != 0) {
+				frame.append(candidateSpacer);
+			}
+			for(int line = 0; line < sizeSqrt; line++) {
+				if(line == middle) {
+					appendSpaces(digits - numbers[row+1].length());
+					append(numbers[row+1], PLAIN);
+				}else {
+					appendSpaces(digits);
+				}
+				append("|", PLAIN);
+				for(int col = 0; col < size; col++) {
+					appendSpaces(1);
+					appendCandidateLine(board, row, col, line);
+					if(col%sizeSqrt == sizeSqrt-1) {
+						appendSpaces(1);
+						append("|", PLAIN);
+					}
+				}
+				append("\n", PLAIN);
+			}
+		}
+		frame.append(candidateFooter);
+	}
+
+	/**
+	 * 候補付きの表示の1セルのうち1行分(格子の一辺の文字数)を追加する
+	 * @param line : int : セル内の行[0, 格子の一辺の長さ)
+	 */
+	private void appendCandidateLine(Board board, int row, int col, int line) {
+		int value = board.getCell(row+1, col+1);
+		if(value == 0) {
+			int mask = board.getCandidates(row+1, col+1);
+			for(int i = 0; i < sizeSqrt; i++) {
+				int num = line * sizeSqrt + i;
+				if((mask & (1 << num)) != 0) {
+					append(PuzzleFormat.symbolOf(num + 1), PLAIN);
+				}else {
+					appendSpaces(1);
+				}
+			}
+		}else if(line == sizeSqrt / 2) {
+			String text = numbers[value];
+			int left = (sizeSqrt - text.length()) / 2;
+			appendSpaces(left);
+			append(text, styleOf(board, row, col, value));
+			appendSpaces(sizeSqrt - text.length() - left);
+		}else {
+			appendSpaces(sizeSqrt);
+		}
+	}
+
+	/**
+	 * 前のフレームから表示が変わったセルのみを、カーソルを移動して書き換える
+	 * 最後にカーソルを盤面の下に移動し、前のフレームの後に出力された行を消去する。
+	 */
+	private void appendChanges(Board board, boolean candidates) {
+		for(int row = 0; row < size; row++) {
+			for(int col = 0; col < size; col++) {
+				long state = stateOf(board, row, col, candidates);
+				if(state == shown[row * size + col]) {
+					continue;
+				}
+				shown[row * size + col] = state;
+				if(candidates) {
+					for(int line = 0; line < sizeSqrt; line++) {
+						appendCursor(4 + row * (sizeSqrt + 1) + line, digits + 3 + col * (sizeSqrt + 1) + (col / sizeSqrt) * 2);
+						appendCandidateLine(board, row, col, line);
+					}
+				}else {
+					appendCursor(4 + row + row / sizeSqrt, digits + 2 + col * cellWidth + col / sizeSqrt);
+					appendCell(board, row, col);
+				}
+			}
+		}
+		append("", PLAIN);
+		appendCursor(footerLine, 1);
+		frame.append(CLEARBELOW);
+	}
+
+	/**
+	 * 全体を描画したフレームのセルごとの状態と、盤面の下の行の番号を記録する
+	 */
+	private void remember(Board board, boolean candidates) {
+		shown = new long[size * size];
+		for(int row = 0; row < size; row++) {
+			for(int col = 0; col < size; col++) {
+				shown[row * size + col] = stateOf(board, row, col, candidates);
+			}
+		}
+		shownCandidates = candidates;
+		//フレームは画面の1行目から始まり、改行で終わる
+		footerLine = 1;
+		for(int i = 0; i < frame.length(); i++) {
+			if(frame.charAt(i) == '\n') {
+				footerLine++;
+			}
+		}
+	}
+
+	/**
+	 * セルの表示を決める状態を返す
+	 * 値(5ビット)・装飾(2ビット)・候補付きの表示なら候補のビットを詰める。
+	 */
+	private static long stateOf(Board board, int row, int col, boolean candidates) {
+		int value = board.getCell(row+1, col+1);
+		long state = value | styleOf(board, row, col, value) << 5;
+		if(candidates && value == 0) {
+			state |= (long)board.getCandidates(row+1, col+1) << 7;
+		}
+		return state;
+	}
+
+	/**
+	 * セルの装飾を返す
+	 */
+	private static int styleOf(Board board, int row, int col, int value) {
+		if(value == 0) {
+			return PLAIN;
+		}
+		if(board.isClue(row+1, col+1)) {
+			return CLUE;
+		}
+		return board.isMistake(row+1, col+1) ? WRONG : PLAIN;
+	}
+
+	/**
+	 * 装飾を指定して文字列を追加する(装飾が変わるときのみエスケープコードを追加する)
+	 */
+	private void append(String text, int wanted) {
+		if(style != wanted) {
+			frame.append(STYLES[wanted]);
+			style = wanted;
+		}
+		frame.append(text);
+	}
+
+	/**
+	 * 装飾を指定して1文字を追加する
+	 */
+	private void append(char ch, int wanted) {
+		if(style != wanted) {
+			frame.append(STYLES[wanted]);
+			style = wanted;
+		}
+		frame.append(ch);
+	}
+
+	/**
+	 * 空白を追加する
+	 * 色と太字は空白には表れないため、下線のある装飾のときのみ装飾を戻す。
+	 */
+	private void appendSpaces(int count) {
+		if(count <= 0) {
+			return;
+		}
+		if(style == CLUE) {
+			frame.append(STYLES[PLAIN]);
+			style = PLAIN;
+		}
+		for(int i = 0; i < count; i++) {
+			frame.append(' ');
+		}
+	}
+
+	/**
+	 * カーソルを移動するエスケープコードを追加する
+	 * @param line : int : 行(1始まり)
+	 * @param column : int : 列(1始まり)
+	 */
+	private void appendCursor(int line, int column) {
+		frame.append("\u001b[").append(line).append(';').append(column).append('H');
+	}
+}
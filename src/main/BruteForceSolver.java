@@ -0,0 +1,108 @@
+package main;
+
+/**
+ * 全探索による数独ソルバ
+ * 先頭の空欄から順に全ての値を試し、分岐ごとに盤面をコピーして再帰的に解を数える。
+ * 高速なソルバとの比較・検証用に残している。
+ */
+public class BruteForceSolver implements Solver {
+	private final SearchStats stats = new SearchStats(); //探索の統計
+	private int limit; //解の個数がこの値に達したら探索を打ち切る
+	private Board solution; //最初に見つかった解
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit) {
+		if(limit <= 0) {
+			return 0;
+		}
+		this.limit = limit;
+		this.solution = null;
+		SolveEvent event = stats.begin();
+		int count = count(board, 0, 0);
+		stats.end(event, "BRUTE_FORCE", board.SIZE, limit, count);
+		return count;
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	@Override
+	public Board solve(Board board) {
+		countSolutions(board, 1);
+		return solution;
+	}
+
+	@Override
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を再帰的に数える
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param found : int : これまでに見つかった解の個数
+	 * @param depth : int : 再帰の深さ
+	 * @return int : この盤面以下で見つかった解の個数
+	 */
+	private int count(Board board, int found, int depth) {
+		stats.depth(depth);
+		//現盤面がすでに数独の制約を満たさないなら枝刈り(再帰探索の打ち切り)をする。
+		if(!board.isCorrect()) {
+			stats.backtracks++;
+			return 0;
+		}
+
+		int size = board.SIZE;
+		boolean selected = false;
+
+		int counter = 0;
+		int rStart, cStart, nStart;
+
+		rStart = 0;
+		cStart = 0;
+		nStart = 0;
+
+		for(int row = 1; row <= size; row++) {
+			for(int col = 1; col <= size; col++) {
+				for(int num = 1; num <= size; num++) {
+					int r, c, n;
+					r = ((rStart + row) % size )+1;
+					c = ((cStart + col) % size )+1;
+					n = ((nStart + num) % size )+1;
+					if(board.isBlank(r, c)) {
+						Board next = board.copyBoard();
+						try {
+							next.setCell(r, c, n);
+						}catch(Exception e) {
+							e.printStackTrace();
+						}
+						stats.nodes++;
+						counter += count(next, found + counter, depth + 1);
+						selected = true;
+						if(found + counter >= limit) {
+							return counter;
+						}
+					}
+				}
+				if(selected) {
+					return counter;
+				}
+			}
+		}
+		if(board.isSuccess()) {
+			if(solution == null) {
+				solution = board.copyBoard();
+			}
+			counter++;
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,215 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * 盤面の空欄ごとの候補の数字(ペンシルマーク)
+ * Boardが値を書き換えるたびに、ユニットに数字が現れた・なくなったときのみ通知を受け、
+ * そのユニットに属するセルの候補と、ユニットと数字ごとの候補のセル数だけを更新する。
+ * 盤面全体から候補を計算し直すことはないため、1手あたりの更新は3ユニット分のセル数で終わり、
+ * 16x16や25x25でもヒントの検索は候補の走査のみで済む。
+ * 数字はビット(数字nは1 << n)で表すため、盤面の一辺は32以下である必要がある。
+ */
+public class CandidateMarks {
+	private final BoardGeometry geometry; //盤面サイズごとに共有される位置関係の表
+	private final int size; //盤面の一辺の長さ
+	private final int fullMask; //全ての数字のビットが立ったマスク
+	private final int[] unitMasks; //ユニットごとの置かれている数字のビット
+	private final int[] candidates; //セルごとの候補の数字のビット(埋まったセルは0)
+	private final int[] places; //ユニットと数字ごとの候補になっているセルの数。[ユニット番号 * size + 数字]
+	private final boolean[] blank; //セルごとの空欄ならtrue
+
+	/**
+	 * コンストラクタ
+	 * 作成直後は全てのセルが空欄で、全ての数字が候補になっている状態を表す。
+	 * @param geometry : BoardGeometry : 盤面サイズの位置関係の表
+	 */
+	CandidateMarks(BoardGeometry geometry) {
+		this.geometry = geometry;
+		this.size = geometry.SIZE;
+		this.fullMask = (1 << size) - 1;
+		unitMasks = new int[geometry.UNITS];
+		candidates = new int[geometry.CELLS];
+		places = new int[geometry.UNITS * size];
+		blank = new boolean[geometry.CELLS];
+		Arrays.fill(candidates, fullMask);
+		Arrays.fill(places, size);
+		Arrays.fill(blank, true);
+	}
+
+	/**
+	 * コピーコンストラクタ
+	 * @param marks : CandidateMarks : コピー元
+	 */
+	CandidateMarks(CandidateMarks marks) {
+		this.geometry = marks.geometry;
+		this.size = marks.size;
+		this.fullMask = marks.fullMask;
+		this.unitMasks = marks.unitMasks.clone();
+		this.candidates = marks.candidates.clone();
+		this.places = marks.places.clone();
+		this.blank = marks.blank.clone();
+	}
+
+	/**
+	 * 空欄のセルの候補を返す
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @return int : 候補の数字のビット(数字nは1 << n。埋まったセルは0)
+	 */
+	public int get(int cell) {
+		return candidates[cell];
+	}
+
+	/**
+	 * セルが空欄でなくなったことを反映する
+	 * Boardはユニットに数字を加える前に呼ぶ。
+	 * @param cell : int : セル番号[0, CELLS)
+	 */
+	void fill(int cell) {
+		blank[cell] = false;
+		setCandidates(cell, 0);
+	}
+
+	/**
+	 * セルが空欄になったことを反映し、属する3つのユニットに置かれていない数字を候補にする
+	 * Boardはユニットから数字を除いた後に呼ぶ。
+	 * @param cell : int : セル番号[0, CELLS)
+	 */
+	void clear(int cell) {
+		blank[cell] = true;
+		setCandidates(cell, fullMask & ~used(cell));
+	}
+
+	/**
+	 * ユニットに数字が現れたことを反映し、ユニット内の空欄の候補から取り除く
+	 * @param unit : int : ユニット番号[0, UNITS)
+	 * @param num : int : 数字[0, size)
+	 */
+	void digitAdded(int unit, int num) {
+		int bit = 1 << num;
+		unitMasks[unit] |= bit;
+		for(int cell : geometry.unitCells(unit)) {
+			if((candidates[cell] & bit) != 0) {
+				setCandidates(cell, candidates[cell] & ~bit);
+			}
+		}
+	}
+
+	/**
+	 * ユニットから数字がなくなったことを反映し、他のユニットにもない空欄の候補に戻す
+	 * @param unit : int : ユニット番号[0, UNITS)
+	 * @param num : int : 数字[0, size)
+	 */
+	void digitRemoved(int unit, int num) {
+		int bit = 1 << num;
+		unitMasks[unit] &= ~bit;
+		for(int cell : geometry.unitCells(unit)) {
+			if(blank[cell] && (used(cell) & bit) == 0) {
+				setCandidates(cell, candidates[cell] | bit);
+			}
+		}
+	}
+
+	/**
+	 * セルが属する3つのユニットに置かれている数字のビットを返す
+	 */
+	private int used(int cell) {
+		return unitMasks[geometry.rowOf(cell)]
+				| unitMasks[size + geometry.colOf(cell)]
+				| unitMasks[2 * size + geometry.boxOf(cell)];
+	}
+
+	/**
+	 * セルの候補を書き換え、増減した数字についてユニットごとの候補のセル数を更新する
+	 * @param cell : int : セル番号[0, CELLS)
+	 * @param mask : int : 新しい候補
+	 */
+	private void setCandidates(int cell, int mask) {
+		int changed = candidates[cell] ^ mask;
+		if(changed == 0) {
+			return;
+		}
+		int rowBase = geometry.rowOf(cell) * size;
+		int colBase = (size + geometry.colOf(cell)) * size;
+		int boxBase = (2 * size + geometry.boxOf(cell)) * size;
+		for(int bits = changed; bits != 0; bits &= bits - 1) {
+			int num = Integer.numberOfTrailingZeros(bits);
+			int delta = (mask & (1 << num)) != 0 ? 1 : -1;
+			places[rowBase + num] += delta;
+			places[colBase + num] += delta;
+			places[boxBase + num] += delta;
+		}
+		candidates[cell] = mask;
+	}
+
+	/**
+	 * 次に確定できるセルを1つ探す
+	 * 候補のない空欄があればそれを返し、なければネイキッドシングル、ヒドゥンシングルの順に探す。
+	 * 盤面に入力の誤りがある場合、返すヒントは誤りを前提にしたものになる。
+	 * @return Hint : 見つかったヒント(確定できるセルがなければnull)
+	 */
+	public Hint findHint() {
+		for(int cell = 0; cell < geometry.CELLS; cell++) {
+			if(blank[cell] && candidates[cell] == 0) {
+				return new Hint(cell, -1, null, -1);
+			}
+		}
+		for(int cell = 0; cell < geometry.CELLS; cell++) {
+			if(blank[cell] && Integer.bitCount(candidates[cell]) == 1) {
+				return new Hint(cell, Integer.numberOfTrailingZeros(candidates[cell]), LogicSolver.Technique.NAKED_SINGLE, -1);
+			}
+		}
+		for(int unit = 0; unit < geometry.UNITS; unit++) {
+			for(int num = 0; num < size; num++) {
+				if(places[unit * size + num] != 1 || (unitMasks[unit] & (1 << num)) != 0) {
+					continue;
+				}
+				for(int cell : geometry.unitCells(unit)) {
+					if((candidates[cell] & (1 << num)) != 0) {
+						return new Hint(cell, num, LogicSolver.Technique.HIDDEN_SINGLE, unit);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * ヒント(次に確定できるセル)
+	 */
+	public class Hint {
+		public final int row; //行のインデックス[1, 盤面の一辺の長さ]
+		public final int col; //列のインデックス[1, 盤面の一辺の長さ]
+		public final int value; //確定する値[1, 盤面の一辺の長さ](候補のない空欄の場合は0)
+		public final LogicSolver.Technique technique; //利用したテクニック(候補のない空欄の場合はnull)
+		private final int unit; //ヒドゥンシングルのユニット番号(それ以外は-1)
+
+		/**
+		 * コンストラクタ
+		 * @param cell : int : セル番号[0, CELLS)
+		 * @param num : int : 数字[0, size)(候補のない空欄の場合は-1)
+		 * @param technique : LogicSolver.Technique : 利用したテクニック
+		 * @param unit : int : ヒドゥンシングルのユニット番号(それ以外は-1)
+		 */
+		Hint(int cell, int num, LogicSolver.Technique technique, int unit) {
+			this.row = geometry.rowOf(cell) + 1;
+			this.col = geometry.colOf(cell) + 1;
+			this.value = num + 1;
+			this.technique = technique;
+			this.unit = unit;
+		}
+
+		@Override
+		public String toString() {
+			String position = "(" + row + ", " + col + ")";
+			if(technique == null) {
+				return position + " に入る数字がありません。入力に誤りがあります";
+			}
+			if(technique == LogicSolver.Technique.NAKED_SINGLE) {
+				return position + " に入る数字は " + value + " だけです";
+			}
+			String name = unit < size ? (unit + 1) + "行目" : unit < 2 * size ? (unit - size + 1) + "列目" : (unit - 2 * size + 1) + "番目の格子";
+			return name + "で " + value + " が入るのは " + position + " だけです";
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package main;
+
+/**
+ * 問題の難易度
+ * 解くために必要だった最も難しいテクニックで決まる。
+ */
+public enum Difficulty {
+	EASY, //シングルのみで解ける
+	MEDIUM, //ロックされた候補・ペアが必要
+	HARD, //トリプル・X-Wingが必要
+	EXPERT; //テクニックだけでは解けず探索が必要
+}
@@ -0,0 +1,333 @@
+package main;
+
+/**
+ * Dancing Links(Algorithm X)による数独ソルバ
+ * 数独を厳密被覆問題として扱い、
+ * 「セルに値がある」「行に数字がある」「列に数字がある」「格子に数字がある」の4種類の制約を列、
+ * 「セルに数字を置く」という選択を行とした疎行列を双方向連結リストで構築して探索する。
+ * 連結リストは配列で表現し、盤面サイズが変わらない限り再利用する。
+ * ノード数の上限を指定した探索では、上限に達した時点で打ち切ってUNKNOWNを返す。
+ * インスタンスは探索用の作業領域を持つため、スレッド間で共有しないこと。
+ */
+public class DlxSolver implements Solver {
+	private static final int ROOT = 0; //ヘッダの起点となるノード
+
+	private int size; //盤面の一辺の長さ
+	private int sizeSqrt; //格子の一辺の長さ
+	private int columnCount; //制約(列)の数
+
+	//ノードの連結情報(0がROOT, [1, columnCount]が列ヘッダ, それ以降が行のノード)
+	private int[] left;
+	private int[] right;
+	private int[] up;
+	private int[] down;
+	private int[] column; //ノードが属する列ヘッダ
+	private int[] choice; //ノードが表す選択(セル番号 * size + 数字)
+	private int[] columnSize; //列ごとのノード数
+	private int nodeCount; //使用中のノード数
+
+	private int[] values; //読み込んだ盤面の値(空欄は-1)
+	private int[] rowUsed; //行ごとの初期値で使用済みの数字
+	private int[] colUsed; //列ごとの初期値で使用済みの数字
+	private int[] boxUsed; //格子ごとの初期値で使用済みの数字
+
+	private int[] selected; //探索中に選んだ行のノード
+	private int[] solution; //最初に見つかった解(セル番号ごとの数字)
+
+	private final SearchStats stats = new SearchStats(); //探索の統計
+	private int counter; //見つかった解の個数
+	private int limit; //解の個数がこの値に達したら探索を打ち切る
+	private long nodeLimit; //stats.nodesがこの値に達したら探索を打ち切る
+	private boolean aborted; //ノード数の上限で打ち切ったらtrue
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit) {
+		if(limit <= 0) {
+			return 0;
+		}
+		return countSolutions(board, limit, Long.MAX_VALUE);
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit, long maxNodes) {
+		if(limit <= 0) {
+			return 0;
+		}
+		SolveEvent event = stats.begin();
+		int count = run(board, limit, maxNodes);
+		stats.end(event, "DLX", board.SIZE, limit, count);
+		return count;
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	@Override
+	public Board solve(Board board) {
+		SolveEvent event = stats.begin();
+		int count = run(board, 1, Long.MAX_VALUE);
+		stats.end(event, "DLX", board.SIZE, 1, count);
+		if(count == 0) {
+			return null;
+		}
+		Board answer = new Board(size);
+		for(int i = 0; i < size * size; i++) {
+			try {
+				answer.setCell(i / size + 1, i % size + 1, solution[i] + 1);
+			}catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return answer;
+	}
+
+	@Override
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 盤面から制約行列を構築して探索を行う
+	 * @param board : Board : 探索する盤面
+	 * @param limit : int : 解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 見つかった解の個数(ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	private int run(Board board, int limit, long maxNodes) {
+		this.counter = 0;
+		this.limit = limit;
+		this.nodeLimit = maxNodes > Long.MAX_VALUE - stats.nodes ? Long.MAX_VALUE : stats.nodes + maxNodes;
+		this.aborted = false;
+		if(!build(board)) {
+			return 0;
+		}
+		search(0);
+		return aborted && counter < limit ? UNKNOWN : counter;
+	}
+
+	/**
+	 * 盤面サイズに合わせて作業領域を確保する
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param sizeSqrt : int : 格子の一辺の長さ
+	 */
+	private void allocate(int size, int sizeSqrt) {
+		this.size = size;
+		this.sizeSqrt = sizeSqrt;
+		int cells = size * size;
+		columnCount = 4 * cells;
+		int nodes = 1 + columnCount + 4 * cells * size;
+		left = new int[nodes];
+		right = new int[nodes];
+		up = new int[nodes];
+		down = new int[nodes];
+		column = new int[nodes];
+		choice = new int[nodes];
+		columnSize = new int[columnCount + 1];
+		values = new int[cells];
+		rowUsed = new int[size];
+		colUsed = new int[size];
+		boxUsed = new int[size];
+		selected = new int[cells];
+		solution = new int[cells];
+	}
+
+	/**
+	 * 盤面から制約行列を構築する
+	 * 初期値のあるセルはその値の行のみ、空欄は初期値と矛盾しない数字の行のみを追加する。
+	 * @param board : Board : 読み込む盤面
+	 * @return boolean : 初期値同士が矛盾していれば false
+	 */
+	private boolean build(Board board) {
+		if(left == null || size != board.SIZE) {
+			allocate(board.SIZE, board.SIZESQRT);
+		}
+
+		//列ヘッダの初期化
+		for(int c = 0; c <= columnCount; c++) {
+			left[c] = c - 1;
+			right[c] = c + 1;
+			up[c] = c;
+			down[c] = c;
+			columnSize[c] = 0;
+		}
+		left[ROOT] = columnCount;
+		right[columnCount] = ROOT;
+		nodeCount = columnCount + 1;
+
+		//初期値から使用済みの数字を求める
+		for(int i = 0; i < size; i++) {
+			rowUsed[i] = 0;
+			colUsed[i] = 0;
+			boxUsed[i] = 0;
+		}
+		for(int i = 0; i < size * size; i++) {
+			int row = i / size;
+			int col = i % size;
+			int box = (row / sizeSqrt) * sizeSqrt + col / sizeSqrt;
+			values[i] = board.getCell(row + 1, col + 1) - 1;
+			if(values[i] < 0) {
+				continue;
+			}
+			int bit = 1 << values[i];
+			if(((rowUsed[row] | colUsed[col] | boxUsed[box]) & bit) != 0) {
+				return false;
+			}
+			rowUsed[row] |= bit;
+			colUsed[col] |= bit;
+			boxUsed[box] |= bit;
+		}
+
+		//選択肢ごとに行を追加する
+		for(int i = 0; i < size * size; i++) {
+			int row = i / size;
+			int col = i % size;
+			int box = (row / sizeSqrt) * sizeSqrt + col / sizeSqrt;
+			if(values[i] >= 0) {
+				addRow(i, row, col, box, values[i]);
+				continue;
+			}
+			int used = rowUsed[row] | colUsed[col] | boxUsed[box];
+			for(int num = 0; num < size; num++) {
+				if((used & (1 << num)) == 0) {
+					addRow(i, row, col, box, num);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 「セルに数字を置く」選択を表す行を制約行列に追加する
+	 * @param cell : int : セル番号
+	 * @param row : int : 行番号
+	 * @param col : int : 列番号
+	 * @param box : int : 格子番号
+	 * @param num : int : 置く数字[0, size)
+	 */
+	private void addRow(int cell, int row, int col, int box, int num) {
+		int cells = size * size;
+		int first = nodeCount;
+		link(first, 1 + cell, cell * size + num);
+		link(first + 1, 1 + cells + row * size + num, cell * size + num);
+		link(first + 2, 1 + 2 * cells + col * size + num, cell * size + num);
+		link(first + 3, 1 + 3 * cells + box * size + num, cell * size + num);
+		for(int k = 0; k < 4; k++) {
+			left[first + k] = first + (k + 3) % 4;
+			right[first + k] = first + (k + 1) % 4;
+		}
+		nodeCount += 4;
+	}
+
+	/**
+	 * ノードを列の末尾に連結する
+	 * @param node : int : 追加するノード
+	 * @param header : int : 列ヘッダ
+	 * @param value : int : ノードが表す選択
+	 */
+	private void link(int node, int header, int value) {
+		column[node] = header;
+		choice[node] = value;
+		up[node] = up[header];
+		down[node] = header;
+		down[up[header]] = node;
+		up[header] = node;
+		columnSize[header]++;
+	}
+
+	/**
+	 * 列と、その列に属する行を行列から取り除く
+	 * @param c : int : 列ヘッダ
+	 */
+	private void cover(int c) {
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for(int i = down[c]; i != c; i = down[i]) {
+			for(int j = right[i]; j != i; j = right[j]) {
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				columnSize[column[j]]--;
+			}
+		}
+	}
+
+	/**
+	 * coverで取り除いた列と行を元に戻す
+	 * @param c : int : 列ヘッダ
+	 */
+	private void uncover(int c) {
+		for(int i = up[c]; i != c; i = up[i]) {
+			for(int j = left[i]; j != i; j = left[j]) {
+				columnSize[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+
+	/**
+	 * ノード数が最も少ない列から再帰的に探索する
+	 * @param depth : int : 選んだ行の数
+	 */
+	private void search(int depth) {
+		stats.depth(depth);
+		if(right[ROOT] == ROOT) {
+			if(counter == 0) {
+				for(int k = 0; k < depth; k++) {
+					solution[choice[selected[k]] / size] = choice[selected[k]] % size;
+				}
+			}
+			counter++;
+			return;
+		}
+
+		int best = right[ROOT];
+		for(int c = right[best]; c != ROOT; c = right[c]) {
+			if(columnSize[c] < columnSize[best]) {
+				best = c;
+				if(columnSize[c] <= 1) {
+					break;
+				}
+			}
+		}
+		if(columnSize[best] == 0) {
+			stats.backtracks++;
+			return;
+		}
+
+		cover(best);
+		for(int r = down[best]; r != best; r = down[r]) {
+			selected[depth] = r;
+			if(++stats.nodes >= nodeLimit) {
+				aborted = true;
+			}
+			for(int j = right[r]; j != r; j = right[j]) {
+				cover(column[j]);
+			}
+			search(depth + 1);
+			for(int j = left[r]; j != r; j = left[j]) {
+				uncover(column[j]);
+			}
+			if(counter >= limit || aborted) {
+				break;
+			}
+		}
+		uncover(best);
+	}
+}
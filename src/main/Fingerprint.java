@@ -0,0 +1,68 @@
+package main;
+
+/**
+ * 正規形の盤面の128ビットの指紋
+ * 盤面サイズと正規形のセルの値から、独立な2つの64ビットのハッシュ値を計算する。
+ * 異なる正規形の指紋が一致する確率は、1億問の中でも約1e-22程度と無視できる。
+ */
+public final class Fingerprint {
+	private static final long SEEDHIGH = 0x9E3779B97F4A7C15L; //上位64ビットのハッシュの初期値
+	private static final long SEEDLOW = 0xC2B2AE3D27D4EB4FL; //下位64ビットのハッシュの初期値
+
+	public final long high; //上位64ビット
+	public final long low; //下位64ビット
+
+	/**
+	 * コンストラクタ
+	 * @param high : long : 上位64ビット
+	 * @param low : long : 下位64ビット
+	 */
+	public Fingerprint(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * 正規形の値から指紋を計算する
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param values : int[] : 正規形のセル番号ごとの値(0は空欄、[1, size]は数字)
+	 * @return Fingerprint : 指紋
+	 */
+	static Fingerprint of(int size, int[] values) {
+		long high = mix(SEEDHIGH ^ size);
+		long low = mix(SEEDLOW + size);
+		for(int i = 0; i < size * size; i++) {
+			high = mix(high ^ values[i]);
+			low = mix(low + values[i] * SEEDHIGH);
+		}
+		return new Fingerprint(high, low);
+	}
+
+	/**
+	 * 64ビットの値をかき混ぜる(SplitMix64の最終段)
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof Fingerprint)) {
+			return false;
+		}
+		Fingerprint fingerprint = (Fingerprint)other;
+		return high == fingerprint.high && low == fingerprint.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int)(low ^ (low >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", high, low);
+	}
+}
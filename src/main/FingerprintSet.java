@@ -0,0 +1,138 @@
+package main;
+
+/**
+ * 指紋の並行な集合
+ * 指紋をセグメントごとの開番地法のlong配列に直接格納するため、1件あたりのメモリは約22〜43バイトで、
+ * オブジェクトを要素とするHashSetの数分の1で済む。
+ * セグメントごとにロックを取るため、複数のスレッドから同時に追加できる。
+ * 要素の削除はできない。
+ */
+public class FingerprintSet {
+	private static final int SEGMENTBITS = 6; //セグメント数のビット数
+	private static final int INITIALCAPACITY = 1 << 10; //セグメントごとの初期の容量
+	private static final double LOADFACTOR = 0.75; //容量に対する要素数の割合の上限
+
+	private final Segment[] segments = new Segment[1 << SEGMENTBITS]; //セグメント
+
+	/**
+	 * コンストラクタ
+	 */
+	public FingerprintSet() {
+		for(int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * 指紋を追加する
+	 * @param fingerprint : Fingerprint : 追加する指紋
+	 * @return boolean : 追加されればtrue、既に含まれていればfalse
+	 */
+	public boolean add(Fingerprint fingerprint) {
+		return segment(fingerprint).add(fingerprint.high, fingerprint.low);
+	}
+
+	/**
+	 * 指紋が含まれているか判定する
+	 * @param fingerprint : Fingerprint : 判定する指紋
+	 * @return boolean : 含まれていればtrue
+	 */
+	public boolean contains(Fingerprint fingerprint) {
+		return segment(fingerprint).contains(fingerprint.high, fingerprint.low);
+	}
+
+	/**
+	 * 要素数を返す
+	 * @return long : 要素数
+	 */
+	public long size() {
+		long size = 0;
+		for(Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * 指紋の上位ビットからセグメントを選ぶ
+	 */
+	private Segment segment(Fingerprint fingerprint) {
+		return segments[(int)(fingerprint.high >>> (64 - SEGMENTBITS))];
+	}
+
+	/**
+	 * 1つのセグメント
+	 * 上位・下位の組を隣り合う2要素に格納する。両方0の組は空きを表すため、0の指紋は別に記録する。
+	 */
+	private static class Segment {
+		private long[] table = new long[2 * INITIALCAPACITY]; //指紋の組
+		private int count; //要素数
+		private boolean hasZero; //0の指紋が含まれていればtrue
+
+		synchronized boolean add(long high, long low) {
+			if(high == 0 && low == 0) {
+				boolean added = !hasZero;
+				hasZero = true;
+				return added;
+			}
+			if(insert(table, high, low)) {
+				count++;
+				if(count > table.length / 2 * LOADFACTOR) {
+					grow();
+				}
+				return true;
+			}
+			return false;
+		}
+
+		synchronized boolean contains(long high, long low) {
+			if(high == 0 && low == 0) {
+				return hasZero;
+			}
+			int mask = table.length / 2 - 1;
+			for(int slot = (int)low & mask; ; slot = (slot + 1) & mask) {
+				if(table[2 * slot] == 0 && table[2 * slot + 1] == 0) {
+					return false;
+				}
+				if(table[2 * slot] == high && table[2 * slot + 1] == low) {
+					return true;
+				}
+			}
+		}
+
+		synchronized long size() {
+			return count + (hasZero ? 1 : 0);
+		}
+
+		/**
+		 * 容量を2倍にして要素を入れ直す
+		 */
+		private void grow() {
+			long[] next = new long[table.length * 2];
+			for(int slot = 0; slot < table.length / 2; slot++) {
+				if(table[2 * slot] != 0 || table[2 * slot + 1] != 0) {
+					insert(next, table[2 * slot], table[2 * slot + 1]);
+				}
+			}
+			table = next;
+		}
+
+		/**
+		 * 表に組を挿入する(線形探索)
+		 * @return boolean : 挿入されればtrue、既に含まれていればfalse
+		 */
+		private static boolean insert(long[] table, long high, long low) {
+			int mask = table.length / 2 - 1;
+			for(int slot = (int)low & mask; ; slot = (slot + 1) & mask) {
+				if(table[2 * slot] == 0 && table[2 * slot + 1] == 0) {
+					table[2 * slot] = high;
+					table[2 * slot + 1] = low;
+					return true;
+				}
+				if(table[2 * slot] == high && table[2 * slot + 1] == low) {
+					return false;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameServerの負荷試験のクライアント
+ * 指定の数のセッションを同時に接続し、各セッションはHINTで得た手をMOVEで入力しながら、
+ * 4手ごとにPRINT、16手ごとにUNDOとREDOを送る。
+ * 解き終わるか、ヒントで確定できるセルがなくなったらRESIGNとNEWで次の問題に進み、
+ * 指定の数のコマンドを送ったらRESIGNとQUITで終える。
+ * コマンドの種類ごとに送ってから応答を受け取るまでの時間を記録し、パーセンタイルを集計する。
+ * 接続してからGAMEの行を受け取るまでの時間はCONNECTとして記録する。
+ */
+public class GameLoadTest {
+	public static final String[] COMMANDS = {"CONNECT", "NEW", "MOVE", "HINT", "PRINT", "UNDO", "REDO", "RESIGN", "QUIT"}; //集計するコマンド
+	private static final int CONNECTTIMEOUT = 30000; //接続のタイムアウト[ms]
+	private static final int READTIMEOUT = 60000; //応答のタイムアウト[ms]
+
+	private final String host; //接続先のホスト
+	private final int port; //接続先のポート番号
+	private final int sessions; //同時に接続するセッション数
+	private final int commands; //1セッションで送るコマンド数
+	private final long seed; //セッションごとの乱数のシード値
+	private final Map<String, LatencyStats> stats = new LinkedHashMap<>(); //コマンドごとの応答時間
+	private final AtomicLong errors = new AtomicLong(); //ERRや想定外の応答の数
+	private final AtomicLong failedSessions = new AtomicLong(); //途中で切断されたセッション数
+	private long elapsedNanos; //全体の経過時間[ns]
+	private boolean virtual; //セッションに仮想スレッドを使ったならtrue
+
+	/**
+	 * コンストラクタ
+	 * @param host : String : 接続先のホスト
+	 * @param port : int : 接続先のポート番号
+	 * @param sessions : int : 同時に接続するセッション数
+	 * @param commands : int : 1セッションで送るコマンド数
+	 * @param seed : long : 乱数のシード値
+	 */
+	public GameLoadTest(String host, int port, int sessions, int commands, long seed) {
+		if(sessions <= 0 || commands < 0) {
+			throw new IllegalArgumentException("セッション数とコマンド数の指定が不正です");
+		}
+		this.host = host;
+		this.port = port;
+		this.sessions = sessions;
+		this.commands = commands;
+		this.seed = seed;
+		for(String command : COMMANDS) {
+			stats.put(command, new LatencyStats());
+		}
+	}
+
+	/**
+	 * 全てのセッションを同時に実行し、終わるまで待つ
+	 * セッションはGameServerと同じく、使えれば仮想スレッドで実行する。
+	 * @throws InterruptedException : 待機中に割り込まれたときのエラー
+	 */
+	public void run() throws InterruptedException {
+		ExecutorService executor = GameServer.newSessionExecutor("load-session");
+		virtual = GameServer.isVirtual(executor);
+		SplittableRandom random = new SplittableRandom(seed);
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<>(sessions);
+		for(int i = 0; i < sessions; i++) {
+			SplittableRandom sessionRandom = random.split();
+			futures.add(executor.submit(() -> session(sessionRandom)));
+		}
+		try {
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		}catch(ExecutionException e) {
+			throw new IllegalStateException("負荷試験のセッションが異常終了しました", e.getCause());
+		}finally {
+			executor.shutdownNow();
+		}
+		elapsedNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * コマンドごとの応答時間のパーセンタイルを文字列にする
+	 * @return String : 集計結果(複数行)
+	 */
+	public String report() {
+		long total = 0;
+		for(String command : COMMANDS) {
+			if(!command.equals("CONNECT")) {
+				total += stats.get(command).count();
+			}
+		}
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%d sessions (%s threads), %d commands in %.3f s (%.1f commands/s), %d errors, %d failed sessions%n",
+				sessions, virtual ? "virtual" : "platform", total, seconds, seconds == 0 ? 0 : total / seconds, errors.get(), failedSessions.get()));
+		report.append(String.format("%-8s %9s %10s %10s %10s %10s %10s%n", "command", "count", "p50[ms]", "p90[ms]", "p99[ms]", "p99.9[ms]", "max[ms]"));
+		for(String command : COMMANDS) {
+			LatencyStats latency = stats.get(command);
+			if(latency.count() == 0) {
+				continue;
+			}
+			report.append(String.format("%-8s %9d %10.3f %10.3f %10.3f %10.3f %10.3f%n", command, latency.count(),
+					latency.percentile(50) / 1e6, latency.percentile(90) / 1e6, latency.percentile(99) / 1e6,
+					latency.percentile(99.9) / 1e6, latency.percentile(100) / 1e6));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * エラーなく全てのセッションを終えたか判定する
+	 * @return boolean : ERRや切断がなければtrue
+	 */
+	public boolean isClean() {
+		return errors.get() == 0 && failedSessions.get() == 0;
+	}
+
+	/**
+	 * 1つのセッションを実行する
+	 * @param random : SplittableRandom : セッションの乱数
+	 */
+	private void session(SplittableRandom random) {
+		try(Socket socket = new Socket()) {
+			long start = System.nanoTime();
+			socket.connect(new InetSocketAddress(host, port), CONNECTTIMEOUT);
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(READTIMEOUT);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			String greeting = in.readLine();
+			record("CONNECT", System.nanoTime() - start);
+			if(greeting == null || !greeting.startsWith("GAME ")) {
+				failedSessions.incrementAndGet();
+				return;
+			}
+
+			//手を打ち始める位置をずらし、全てのセッションが同じ周期でPRINTやUNDOを送らないようにする
+			int moves = random.nextInt(16);
+			int sent = 0;
+			while(sent < commands) {
+				String hint = send(in, out, "HINT", "HINT");
+				sent++;
+				String[] words = hint.split(" ");
+				String reply;
+				if(words.length == 5) {
+					reply = send(in, out, "MOVE " + words[1] + " " + words[2] + " " + words[3], "OK");
+					sent++;
+					moves++;
+				}else {
+					//ヒントで確定できない問題は投了する
+					reply = "OK SOLVED";
+					if(!words[1].equals("NONE")) {
+						//候補のない空欄はヒントから打った手では起きない
+						errors.incrementAndGet();
+					}
+					send(in, out, "RESIGN", "SOLUTION");
+					sent++;
+				}
+				if(reply.equals("OK SOLVED") || reply.equals("OK FILLED")) {
+					send(in, out, "NEW", "GAME");
+					sent++;
+					continue;
+				}
+				if(moves % 4 == 0) {
+					send(in, out, "PRINT", "BOARD");
+					sent++;
+				}
+				if(moves % 16 == 0) {
+					send(in, out, "UNDO", "OK");
+					send(in, out, "REDO", "OK");
+					sent += 2;
+				}
+			}
+			send(in, out, "RESIGN", "SOLUTION");
+			send(in, out, "QUIT", "BYE");
+		}catch(IOException e) {
+			failedSessions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * コマンドを1行送って応答を待ち、応答時間を記録する
+	 * @param in : BufferedReader : 応答を読む入力
+	 * @param out : Writer : コマンドを書く出力
+	 * @param line : String : コマンド
+	 * @param expected : String : 期待する応答の先頭(一致しなければエラーとして数える)
+	 * @return String : 応答
+	 * @throws IOException : 切断されたときのエラー
+	 */
+	private String send(BufferedReader in, Writer out, String line, String expected) throws IOException {
+		long start = System.nanoTime();
+		out.write(line);
+		out.write('\n');
+		out.flush();
+		String reply = in.readLine();
+		long nanos = System.nanoTime() - start;
+		if(reply == null) {
+			throw new IOException("切断されました");
+		}
+		int space = line.indexOf(' ');
+		record(space < 0 ? line : line.substring(0, space), nanos);
+		if(!reply.startsWith(expected)) {
+			errors.incrementAndGet();
+		}
+		return reply;
+	}
+
+	/**
+	 * コマンドの応答時間を記録する
+	 * 記録は全てのセッションで共有するため、コマンドごとに排他する。
+	 * 記録にかかる時間は応答を待つ時間に比べて十分小さい。
+	 */
+	private void record(String command, long nanos) {
+		LatencyStats latency = stats.get(command);
+		synchronized(latency) {
+			latency.record(nanos);
+		}
+	}
+}
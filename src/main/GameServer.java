@@ -0,0 +1,276 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1行1コマンドのテキストで数独を遊べるTCPサーバ
+ * 接続ごとに1つのSudokuを作り、接続ごとのスレッドでコマンドを読んではSudoku.execCommandの応答を返す。
+ * 問題は全ての接続で共有するPuzzlePoolから取り出すため、接続時に問題の生成を待つことはほとんどない。
+ * 接続すると最初に GAME サイズ シード値 盤面 の行が送られる。
+ * コマンドはSudoku.execCommandのもの(MOVE, PRINT, HINT, UNDO, REDO, RESIGN)に加えて、
+ *   NEW [サイズ] : 新しい問題を始める。応答は GAME サイズ シード値 盤面
+ *   QUIT         : 接続を終える。応答は BYE
+ * 文字コードはUTF-8で、応答はコマンド1行につき必ず1行返す。
+ */
+public class GameServer implements Closeable {
+	public static final int DEFAULTPORT = 5099; //標準のポート番号
+	public static final int BACKLOG = 4096; //接続待ちの上限数
+	public static final int POOLCAPACITY = 64; //共有のプールにサイズと難易度ごとに蓄える問題数
+	public static final int POOLLOWWATER = 48; //共有のプールの難易度ごとに補充を始める問題数
+	private static final long STACKSIZE = 256 * 1024; //仮想スレッドが使えない場合のスレッドのスタックサイズ[byte]
+	private static final long SHUTDOWNMILLIS = 5000; //終了時に接続ごとのスレッドを待つ時間[ms]
+
+	private final ServerSocket server; //接続を受け付けるソケット
+	private final PuzzlePool pool; //問題を取り出す共有のプール
+	private final int defaultSize; //接続時とサイズを省略したNEWの盤面サイズ
+	private final ExecutorService sessions; //接続ごとのスレッド
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet(); //接続中のソケット
+	private final AtomicInteger active = new AtomicInteger(); //接続中のセッション数
+	private final AtomicLong accepted = new AtomicLong(); //受け付けたセッション数
+	private volatile boolean closed = false; //closeが呼ばれたならtrue
+
+	/**
+	 * コンストラクタ
+	 * ソケットを開くだけで、接続の受け付けはserveかstartで始める。
+	 * @param address : InetAddress : 待ち受けるアドレス(nullの場合は全てのアドレス)
+	 * @param port : int : 待ち受けるポート番号(0の場合は空いているポート)
+	 * @param pool : PuzzlePool : 問題を取り出すプール(サーバは閉じない)
+	 * @param defaultSize : int : 接続時の盤面サイズ（平方数である必要がある）
+	 * @throws IOException : ソケットを開けなかったときのエラー
+	 */
+	public GameServer(InetAddress address, int port, PuzzlePool pool, int defaultSize) throws IOException {
+		if(!isPlayableSize(defaultSize)) {
+			throw new IllegalArgumentException("盤面のサイズが不正です: " + defaultSize);
+		}
+		this.pool = pool;
+		this.defaultSize = defaultSize;
+		this.server = new ServerSocket(port, BACKLOG, address);
+		this.sessions = newSessionExecutor("game-session");
+	}
+
+	/**
+	 * 1タスクごとに新しいスレッドで実行するExecutorServiceを作る
+	 * Executors.newVirtualThreadPerTaskExecutor(Java 21以降)があれば仮想スレッドを使い、
+	 * なければスタックを小さくしたデーモンのプラットフォームスレッドを使う。
+	 * ビルドはJava 17を対象とするため、仮想スレッドはリフレクションで呼び出す。
+	 * @param name : String : プラットフォームスレッドの名前の接頭辞
+	 * @return ExecutorService : 作成したExecutorService
+	 */
+	static ExecutorService newSessionExecutor(String name) {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch(ReflectiveOperationException | UnsupportedOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(null, task, name + "-" + count.incrementAndGet(), STACKSIZE);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * ExecutorServiceが仮想スレッドを使うか判定する
+	 * @param executor : ExecutorService : newSessionExecutorで作ったExecutorService
+	 * @return boolean : 仮想スレッドを使うならtrue
+	 */
+	static boolean isVirtual(ExecutorService executor) {
+		return !(executor instanceof ThreadPoolExecutor);
+	}
+
+	/**
+	 * 待ち受けているポート番号を返す
+	 * @return int : ポート番号
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * 接続ごとに仮想スレッドを使っているか判定する
+	 * @return boolean : 仮想スレッドならtrue
+	 */
+	public boolean usesVirtualThreads() {
+		return isVirtual(sessions);
+	}
+
+	/**
+	 * 接続中のセッション数を返す
+	 * @return int : セッション数
+	 */
+	public int getActiveSessions() {
+		return active.get();
+	}
+
+	/**
+	 * これまでに受け付けたセッション数を返す
+	 * @return long : セッション数
+	 */
+	public long getAcceptedSessions() {
+		return accepted.get();
+	}
+
+	/**
+	 * 別のスレッドで接続の受け付けを始める
+	 */
+	public void start() {
+		Thread acceptor = new Thread(() -> {
+			try {
+				serve();
+			}catch(IOException e) {
+				System.err.println("接続を受け付けられませんでした: " + e.getMessage());
+			}
+		}, "game-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * closeが呼ばれるまで、呼び出したスレッドで接続を受け付ける
+	 * @throws IOException : 接続の受け付けに失敗したときのエラー
+	 */
+	public void serve() throws IOException {
+		while(true) {
+			Socket socket;
+			try {
+				socket = server.accept();
+			}catch(SocketException e) {
+				if(closed) {
+					return;
+				}
+				throw e;
+			}
+			connections.add(socket);
+			accepted.incrementAndGet();
+			try {
+				sessions.execute(() -> session(socket));
+			}catch(RejectedExecutionException e) {
+				connections.remove(socket);
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * 接続の受け付けをやめ、接続中のセッションを全て切断する
+	 * 2回目以降の呼び出しは何もしない。
+	 * @throws IOException : ソケットを閉じられなかったときのエラー
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		server.close();
+		sessions.shutdown();
+		for(Socket socket : connections) {
+			socket.close();
+		}
+		try {
+			sessions.awaitTermination(SHUTDOWNMILLIS, TimeUnit.MILLISECONDS);
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 1つの接続を切断されるかQUITを受け取るまで処理する
+	 * @param socket : Socket : 接続
+	 */
+	private void session(Socket socket) {
+		active.incrementAndGet();
+		try(socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+			//1コマンドごとに応答を待つため、小さな書き込みを遅らせない
+			socket.setTcpNoDelay(true);
+			Sudoku game = newGame(defaultSize);
+			send(out, gameLine(game));
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if(words[0].isEmpty()) {
+					continue;
+				}
+				if(words[0].equalsIgnoreCase("QUIT")) {
+					send(out, "BYE");
+					break;
+				}
+				if(!words[0].equalsIgnoreCase("NEW")) {
+					send(out, game.execCommand(line));
+					continue;
+				}
+				try {
+					int size = words.length > 1 ? Integer.parseInt(words[1]) : defaultSize;
+					game = newGame(size);
+					send(out, gameLine(game));
+				}catch(IllegalArgumentException e) {
+					send(out, "ERR 盤面のサイズが不正です");
+				}
+			}
+		}catch(IOException e) {
+			//切断されたセッションはそのまま終える
+		}finally {
+			connections.remove(socket);
+			active.decrementAndGet();
+		}
+	}
+
+	/**
+	 * ゲームで選べる盤面サイズか判定する
+	 * Mainで選べるサイズ(4, 9, 16, 25)のみ受け付ける。
+	 */
+	private static boolean isPlayableSize(int size) {
+		return size == 4 || size == 9 || size == 16 || size == 25;
+	}
+
+	/**
+	 * プールから問題を取り出してゲームを作る
+	 * @param size : int : 盤面のサイズ
+	 * @return Sudoku : ゲーム
+	 */
+	private Sudoku newGame(int size) {
+		if(!isPlayableSize(size)) {
+			throw new IllegalArgumentException("盤面のサイズが不正です: " + size);
+		}
+		return new Sudoku(null, pool.take(size));
+	}
+
+	/**
+	 * ゲームの開始を知らせる行を作る
+	 */
+	private static String gameLine(Sudoku game) {
+		Board board = game.getBoard();
+		return "GAME " + board.SIZE + " " + game.getSeed() + " " + PuzzleFormat.format(board);
+	}
+
+	/**
+	 * 1行を送る
+	 */
+	private static void send(Writer out, String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+		out.flush();
+	}
+}
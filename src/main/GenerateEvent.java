@@ -0,0 +1,52 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 1問の生成を表すJFRのイベント
+ * PuzzleGenerator.generateから記録する。
+ */
+@Name("main.Generate")
+@Label("Sudoku Generate")
+@Category("Sudoku")
+@Description("解がユニークな問題1問の生成")
+@StackTrace(false)
+class GenerateEvent extends Event {
+	@Label("Size")
+	int size; //盤面の一辺の長さ
+
+	@Label("Seed")
+	long seed; //問題のシード値
+
+	@Label("Target Blanks")
+	int targetBlanks; //目標とした空欄の数
+
+	@Label("Blanks")
+	int blanks; //生成した問題の空欄の数
+
+	@Label("Uniqueness Checks")
+	long uniquenessChecks; //解のユニーク性の判定回数
+
+	@Label("Rejected Removals")
+	long rejectedRemovals; //取り除けなかったヒントの数
+
+	@Label("Nodes")
+	long nodes; //ユニーク性の判定で値を置いた回数
+
+	@Label("Backtracks")
+	long backtracks; //ユニーク性の判定で引き返した回数
+
+	@Label("Answer Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long answerTime; //解答の盤面の作成にかかった時間
+
+	@Label("Dig Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long digTime; //ヒントの取り除きにかかった時間
+}
@@ -0,0 +1,104 @@
+package main;
+
+/**
+ * 1件ごとの処理時間の記録
+ * 処理時間は2のべき乗ごとに16分割した区間のヒストグラムに数えるため、
+ * 件数によらずメモリ使用量は一定で、パーセンタイルの誤差は約3%以内に収まる。
+ * 記録はスレッドごとのインスタンスに行い、集計時にmergeでまとめる。
+ */
+public class LatencyStats {
+	private static final int SUBBITS = 4; //2のべき乗ごとの区間の分割数のビット数
+	private static final int SUBBUCKETS = 1 << SUBBITS; //2のべき乗ごとの区間の分割数
+	private static final int BUCKETS = (64 - SUBBITS + 1) * SUBBUCKETS; //区間の数
+
+	private final long[] buckets = new long[BUCKETS]; //区間ごとの件数
+	private long count; //記録した件数
+
+	/**
+	 * 処理時間を記録する
+	 * @param nanos : long : 処理時間[ns]
+	 */
+	public void record(long nanos) {
+		buckets[bucketOf(Math.max(0, nanos))]++;
+		count++;
+	}
+
+	/**
+	 * 他のインスタンスの記録を追加する
+	 * @param other : LatencyStats : 追加する記録
+	 */
+	public void merge(LatencyStats other) {
+		for(int i = 0; i < BUCKETS; i++) {
+			buckets[i] += other.buckets[i];
+		}
+		count += other.count;
+	}
+
+	/**
+	 * 記録した件数を返す
+	 * @return long : 件数
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * 処理時間のパーセンタイルを返す
+	 * @param percent : double : パーセンタイル(0, 100]
+	 * @return long : 処理時間[ns](記録がない場合は0)
+	 */
+	public long percentile(double percent) {
+		if(count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percent / 100 * count));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i];
+			if(seen >= rank) {
+				return valueOf(i);
+			}
+		}
+		return valueOf(BUCKETS - 1);
+	}
+
+	/**
+	 * スループットと処理時間の集計を文字列にする
+	 * @param elapsedNanos : long : 全体の経過時間[ns]
+	 * @return String : 集計結果
+	 */
+	public String summary(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		return String.format("%d puzzles in %.3f s (%.1f puzzles/s), p50 %.3f ms, p99 %.3f ms",
+				count, seconds, seconds == 0 ? 0 : count / seconds, percentile(50) / 1e6, percentile(99) / 1e6);
+	}
+
+	/**
+	 * 処理時間が含まれる区間を返す
+	 * @param nanos : long : 処理時間[ns](0以上)
+	 * @return int : 区間の番号
+	 */
+	private static int bucketOf(long nanos) {
+		if(nanos < SUBBUCKETS) {
+			return (int)nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int)(nanos >>> (exponent - SUBBITS)) & (SUBBUCKETS - 1);
+		return (exponent - SUBBITS + 1) * SUBBUCKETS + sub;
+	}
+
+	/**
+	 * 区間を代表する処理時間(区間の中央)を返す
+	 * @param bucket : int : 区間の番号
+	 * @return long : 処理時間[ns]
+	 */
+	private static long valueOf(int bucket) {
+		if(bucket < SUBBUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUBBUCKETS + SUBBITS - 1;
+		long width = 1L << (exponent - SUBBITS);
+		long lower = (long)(SUBBUCKETS + bucket % SUBBUCKETS) << (exponent - SUBBITS);
+		return lower + width / 2;
+	}
+}
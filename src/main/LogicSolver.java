@@ -0,0 +1,642 @@
+package main;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 人間の解き方(テクニック)による数独ソルバ
+ * 各空欄の候補をビットマスクで管理し、簡単なテクニックから順に適用して候補を絞り込む。
+ * テクニックで進まなくなった場合のみBitSolverによる探索に切り替える。
+ * 利用したテクニックの回数から難易度を評価できる。
+ * 解の個数を数えるときは、シングルによる確定を先に行ってから探索することで探索ノード数を減らす。
+ * インスタンスは作業領域を持つため、スレッド間で共有しないこと。
+ * 探索の統計には、テクニックによる伝播の回数と、探索に切り替えた後のノード数の両方を記録する。
+ */
+public class LogicSolver implements Solver {
+	private static final int BLANK = SearchState.BLANK; //空欄を表す値
+
+	private BoardGeometry geometry; //盤面サイズごとに共有される位置関係の表
+	private int size; //盤面の一辺の長さ
+	private int fullMask; //全ての数字のビットが立ったマスク
+
+	private int[] values; //セル番号ごとの値。値は[0, size) か BLANK
+	private int[] candidates; //セル番号ごとの候補の数字(埋まったセルは0)
+	private int blanks; //空欄の数
+	private boolean contradiction; //候補のない空欄や置けない数字が見つかったらtrue
+
+	private final Map<Technique, Integer> usage = new EnumMap<>(Technique.class); //テクニックごとの利用回数
+	private final SearchStats stats = new SearchStats(); //探索の統計
+	private final BitSolver bitSolver = new BitSolver(stats); //テクニックで解けない場合の探索(統計を共有する)
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * シングルで確定できるセルを埋めてから探索する。
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit) {
+		return countSolutions(board, limit, Long.MAX_VALUE);
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * ノード数はシングルによる確定の後の探索のみで数える。
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit, long maxNodes) {
+		if(limit <= 0) {
+			return 0;
+		}
+		SolveEvent event = stats.begin();
+		int count = 0;
+		if(load(board)) {
+			propagate(Technique.HIDDEN_SINGLE);
+			if(!contradiction) {
+				count = blanks == 0 ? 1 : bitSolver.countSolutions(size, values, limit, maxNodes);
+			}
+		}
+		stats.end(event, "LOGIC", board.SIZE, limit, count);
+		return count;
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	@Override
+	public Board solve(Board board) {
+		SolveEvent event = stats.begin();
+		boolean solved = solveFully(board);
+		stats.end(event, "LOGIC", board.SIZE, 1, solved ? 1 : 0);
+		return solved ? toBoard() : null;
+	}
+
+	/**
+	 * 引数の盤面をテクニックで解き、難易度を評価する
+	 * テクニックで解けない場合は探索で解き、SEARCHを利用したものとして扱う。
+	 * @param board : Board : 評価する盤面
+	 * @return Rating : 評価結果(盤面に解がない場合はnull)
+	 */
+	public Rating rate(Board board) {
+		SolveEvent event = stats.begin();
+		boolean solved = solveFully(board);
+		stats.end(event, "LOGIC", board.SIZE, 1, solved ? 1 : 0);
+		return solved ? new Rating(usage, toBoard()) : null;
+	}
+
+	@Override
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * テクニックで解き、解けない場合は探索で残りの空欄を埋める
+	 * @param board : Board : 解きたい盤面
+	 * @return boolean : 解が見つかればtrue(全てのセルが確定した状態になる)
+	 */
+	private boolean solveFully(Board board) {
+		if(!load(board)) {
+			return false;
+		}
+		propagate(Technique.X_WING);
+		if(contradiction) {
+			return false;
+		}
+		if(blanks > 0) {
+			if(bitSolver.countSolutions(size, values, 1) == 0) {
+				return false;
+			}
+			bitSolver.copySolution(values);
+			blanks = 0;
+			use(Technique.SEARCH, 1);
+		}
+		return true;
+	}
+
+	/**
+	 * 盤面を読み込んで候補を初期化する
+	 * @param board : Board : 読み込む盤面
+	 * @return boolean : 盤面が数独の制約を満たしていなければ false
+	 */
+	private boolean load(Board board) {
+		if(values == null || size != board.SIZE) {
+			size = board.SIZE;
+			geometry = BoardGeometry.of(size);
+			fullMask = (1 << size) - 1;
+			values = new int[geometry.CELLS];
+			candidates = new int[geometry.CELLS];
+		}
+		usage.clear();
+		contradiction = false;
+		blanks = geometry.CELLS;
+		for(int cell = 0; cell < geometry.CELLS; cell++) {
+			values[cell] = BLANK;
+			candidates[cell] = fullMask;
+		}
+		for(int cell = 0; cell < geometry.CELLS; cell++) {
+			int value = board.getCell(geometry.rowOf(cell)+1, geometry.colOf(cell)+1) - 1;
+			if(value == BLANK) {
+				continue;
+			}
+			if((candidates[cell] & (1 << value)) == 0) {
+				return false;
+			}
+			assign(cell, value);
+		}
+		//初期値の時点で候補のない空欄があっても矛盾として扱う
+		return !contradiction;
+	}
+
+	/**
+	 * 解けるかテクニックで進まなくなるまで、簡単なテクニックから順に適用する
+	 * @param hardest : Technique : 適用するテクニックの上限
+	 */
+	private void propagate(Technique hardest) {
+		while(blanks > 0 && !contradiction) {
+			boolean progress = false;
+			for(Technique technique : Technique.values()) {
+				if(technique.compareTo(hardest) > 0) {
+					break;
+				}
+				int count = apply(technique);
+				if(contradiction) {
+					return;
+				}
+				if(count > 0) {
+					use(technique, count);
+					progress = true;
+					break;
+				}
+			}
+			if(!progress) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * テクニックを盤面全体に1回適用する
+	 * @param technique : Technique : 適用するテクニック
+	 * @return int : 確定したセルと取り除いた候補の数
+	 */
+	private int apply(Technique technique) {
+		switch(technique) {
+		case NAKED_SINGLE:
+			return nakedSingle();
+		case HIDDEN_SINGLE:
+			return hiddenSingle();
+		case LOCKED_CANDIDATES:
+			return lockedCandidates();
+		case NAKED_PAIR:
+			return nakedSubset(2);
+		case HIDDEN_PAIR:
+			return hiddenSubset(2);
+		case NAKED_TRIPLE:
+			return nakedSubset(3);
+		case HIDDEN_TRIPLE:
+			return hiddenSubset(3);
+		case X_WING:
+			return xWing();
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * テクニックの利用回数を加算する
+	 * @param technique : Technique : 利用したテクニック
+	 * @param count : int : 加算する回数
+	 */
+	private void use(Technique technique, int count) {
+		usage.merge(technique, count, Integer::sum);
+		if(technique != Technique.SEARCH) {
+			stats.propagations += count;
+		}
+	}
+
+	/**
+	 * セルに値を確定させ、ピアの候補から取り除く
+	 * @param cell : int : セル番号
+	 * @param value : int : 確定させる値[0, size)
+	 */
+	private void assign(int cell, int value) {
+		int bit = 1 << value;
+		values[cell] = value;
+		candidates[cell] = 0;
+		blanks--;
+		for(int peer : geometry.peers(cell)) {
+			if(values[peer] == value) {
+				contradiction = true;
+			}
+			eliminate(peer, bit);
+		}
+	}
+
+	/**
+	 * 空欄の候補から数字を取り除く
+	 * @param cell : int : セル番号
+	 * @param mask : int : 取り除く数字のマスク
+	 * @return boolean : 候補が減ったらtrue
+	 */
+	private boolean eliminate(int cell, int mask) {
+		if(values[cell] != BLANK || (candidates[cell] & mask) == 0) {
+			return false;
+		}
+		candidates[cell] &= ~mask;
+		if(candidates[cell] == 0) {
+			contradiction = true;
+		}
+		return true;
+	}
+
+	/**
+	 * ネイキッドシングル : 候補が1つしかない空欄を確定させる
+	 * @return int : 確定したセルの数
+	 */
+	private int nakedSingle() {
+		int count = 0;
+		for(int cell = 0; cell < geometry.CELLS && !contradiction; cell++) {
+			if(values[cell] == BLANK && Integer.bitCount(candidates[cell]) == 1) {
+				assign(cell, Integer.numberOfTrailingZeros(candidates[cell]));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * ヒドゥンシングル : ユニット内で数字を置けるセルが1つしかなければ確定させる
+	 * @return int : 確定したセルの数
+	 */
+	private int hiddenSingle() {
+		int count = 0;
+		for(int unit = 0; unit < geometry.UNITS && !contradiction; unit++) {
+			int[] cells = geometry.unitCells(unit);
+			for(int num = 0; num < size && !contradiction; num++) {
+				int bit = 1 << num;
+				int place = -1;
+				int places = 0;
+				boolean placed = false;
+				for(int cell : cells) {
+					if(values[cell] == num) {
+						placed = true;
+						break;
+					}
+					if((candidates[cell] & bit) != 0) {
+						place = cell;
+						places++;
+					}
+				}
+				if(placed) {
+					continue;
+				}
+				if(places == 0) {
+					contradiction = true;
+				}else if(places == 1) {
+					assign(place, num);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * ロックされた候補 : 格子内で数字の候補が1つの行(列)に限られれば、その行(列)の格子外から取り除く(ポインティング)。
+	 * 行(列)内で数字の候補が1つの格子に限られれば、その格子の行(列)外から取り除く(クレーミング)。
+	 * @return int : 取り除いた候補の数
+	 */
+	private int lockedCandidates() {
+		int count = 0;
+		for(int unit = 0; unit < geometry.UNITS; unit++) {
+			int[] cells = geometry.unitCells(unit);
+			boolean isBox = unit >= 2 * size;
+			for(int num = 0; num < size; num++) {
+				int bit = 1 << num;
+				int sameRow = -1;
+				int sameCol = -1;
+				int sameBox = -1;
+				int places = 0;
+				for(int cell : cells) {
+					if((candidates[cell] & bit) == 0) {
+						continue;
+					}
+					int row = geometry.rowOf(cell);
+					int col = geometry.colOf(cell);
+					int box = geometry.boxOf(cell);
+					sameRow = (places == 0 || sameRow == row) ? row : -2;
+					sameCol = (places == 0 || sameCol == col) ? col : -2;
+					sameBox = (places == 0 || sameBox == box) ? box : -2;
+					places++;
+				}
+				if(places < 2) {
+					continue;
+				}
+				if(isBox) {
+					if(sameRow >= 0) {
+						count += eliminateOutside(sameRow, unit, bit);
+					}
+					if(sameCol >= 0) {
+						count += eliminateOutside(size + sameCol, unit, bit);
+					}
+				}else if(sameBox >= 0) {
+					count += eliminateOutside(2 * size + sameBox, unit, bit);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * targetユニットのうち、keepユニットに属さないセルの候補から数字を取り除く
+	 * @param target : int : 候補を取り除くユニット番号
+	 * @param keep : int : 取り除かないユニット番号
+	 * @param mask : int : 取り除く数字のマスク
+	 * @return int : 取り除いた候補の数
+	 */
+	private int eliminateOutside(int target, int keep, int mask) {
+		int count = 0;
+		for(int cell : geometry.unitCells(target)) {
+			if(!inUnit(cell, keep) && eliminate(cell, mask)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * セルがユニットに属するか判定する
+	 * @param cell : int : セル番号
+	 * @param unit : int : ユニット番号
+	 * @return boolean : 属していればtrue
+	 */
+	private boolean inUnit(int cell, int unit) {
+		if(unit < size) {
+			return geometry.rowOf(cell) == unit;
+		}
+		if(unit < 2 * size) {
+			return geometry.colOf(cell) == unit - size;
+		}
+		return geometry.boxOf(cell) == unit - 2 * size;
+	}
+
+	/**
+	 * ネイキッドペア・トリプル : ユニット内のk個の空欄の候補の和集合がk個の数字なら、
+	 * それらの数字をユニット内の他の空欄から取り除く
+	 * @param k : int : 組にするセルの数
+	 * @return int : 取り除いた候補の数
+	 */
+	private int nakedSubset(int k) {
+		int count = 0;
+		int[] chosen = new int[k];
+		for(int unit = 0; unit < geometry.UNITS; unit++) {
+			int[] cells = geometry.unitCells(unit);
+			count += nakedSubset(cells, k, 0, 0, 0, chosen);
+		}
+		return count;
+	}
+
+	/**
+	 * ネイキッドサブセットの組み合わせを再帰的に列挙する
+	 * @param cells : int[] : ユニットのセル
+	 * @param k : int : 組にするセルの数
+	 * @param start : int : 次に選ぶセルの添字の下限
+	 * @param depth : int : 選んだセルの数
+	 * @param union : int : 選んだセルの候補の和集合
+	 * @param chosen : int[] : 選んだセルの添字
+	 * @return int : 取り除いた候補の数
+	 */
+	private int nakedSubset(int[] cells, int k, int start, int depth, int union, int[] chosen) {
+		if(depth == k) {
+			if(Integer.bitCount(union) != k) {
+				return 0;
+			}
+			int count = 0;
+			for(int i = 0; i < cells.length; i++) {
+				boolean member = false;
+				for(int j = 0; j < k; j++) {
+					member |= chosen[j] == i;
+				}
+				if(!member && eliminate(cells[i], union)) {
+					count++;
+				}
+			}
+			return count;
+		}
+		int count = 0;
+		for(int i = start; i < cells.length; i++) {
+			int cand = candidates[cells[i]];
+			int bits = Integer.bitCount(cand);
+			if(values[cells[i]] != BLANK || bits < 2 || bits > k || Integer.bitCount(union | cand) > k) {
+				continue;
+			}
+			chosen[depth] = i;
+			count += nakedSubset(cells, k, i + 1, depth + 1, union | cand, chosen);
+		}
+		return count;
+	}
+
+	/**
+	 * ヒドゥンペア・トリプル : ユニット内でk個の数字を置けるセルの和集合がk個のセルなら、
+	 * それらのセルの候補をk個の数字に限定する
+	 * @param k : int : 組にする数字の数
+	 * @return int : 取り除いた候補の数
+	 */
+	private int hiddenSubset(int k) {
+		int count = 0;
+		int[] places = new int[size];
+		int[] chosen = new int[k];
+		for(int unit = 0; unit < geometry.UNITS; unit++) {
+			int[] cells = geometry.unitCells(unit);
+			//数字ごとに置けるセルの位置(ユニット内の添字)をマスクにする
+			for(int num = 0; num < size; num++) {
+				places[num] = 0;
+				for(int i = 0; i < cells.length; i++) {
+					if((candidates[cells[i]] & (1 << num)) != 0) {
+						places[num] |= 1 << i;
+					}
+				}
+			}
+			count += hiddenSubset(cells, places, k, 0, 0, 0, chosen);
+		}
+		return count;
+	}
+
+	/**
+	 * ヒドゥンサブセットの組み合わせを再帰的に列挙する
+	 * @param cells : int[] : ユニットのセル
+	 * @param places : int[] : 数字ごとの置けるセルの位置のマスク
+	 * @param k : int : 組にする数字の数
+	 * @param start : int : 次に選ぶ数字の下限
+	 * @param depth : int : 選んだ数字の数
+	 * @param union : int : 選んだ数字の置けるセルの位置の和集合
+	 * @param chosen : int[] : 選んだ数字
+	 * @return int : 取り除いた候補の数
+	 */
+	private int hiddenSubset(int[] cells, int[] places, int k, int start, int depth, int union, int[] chosen) {
+		if(depth == k) {
+			if(Integer.bitCount(union) != k) {
+				return 0;
+			}
+			int keep = 0;
+			for(int j = 0; j < k; j++) {
+				keep |= 1 << chosen[j];
+			}
+			int count = 0;
+			for(int i = 0; i < cells.length; i++) {
+				if((union & (1 << i)) != 0 && eliminate(cells[i], fullMask & ~keep)) {
+					count++;
+				}
+			}
+			return count;
+		}
+		int count = 0;
+		for(int num = start; num < size; num++) {
+			int bits = Integer.bitCount(places[num]);
+			if(bits < 2 || bits > k || Integer.bitCount(union | places[num]) > k) {
+				continue;
+			}
+			chosen[depth] = num;
+			count += hiddenSubset(cells, places, k, num + 1, depth + 1, union | places[num], chosen);
+		}
+		return count;
+	}
+
+	/**
+	 * X-Wing : 2つの行で数字を置ける列が同じ2列に限られれば、その2列の他の行から数字を取り除く。
+	 * 行と列を入れ替えた場合も同様に行う。
+	 * @return int : 取り除いた候補の数
+	 */
+	private int xWing() {
+		int count = 0;
+		int[] lines = new int[size];
+		for(int num = 0; num < size; num++) {
+			int bit = 1 << num;
+			for(int byRow = 0; byRow < 2; byRow++) {
+				//行(列)ごとに数字を置ける列(行)の位置をマスクにする
+				for(int line = 0; line < size; line++) {
+					lines[line] = 0;
+					int[] cells = geometry.unitCells(byRow == 0 ? line : size + line);
+					for(int i = 0; i < size; i++) {
+						if((candidates[cells[i]] & bit) != 0) {
+							lines[line] |= 1 << i;
+						}
+					}
+				}
+				for(int a = 0; a < size; a++) {
+					if(Integer.bitCount(lines[a]) != 2) {
+						continue;
+					}
+					for(int b = a + 1; b < size; b++) {
+						if(lines[a] != lines[b]) {
+							continue;
+						}
+						int positions = lines[a];
+						while(positions != 0) {
+							int position = Integer.numberOfTrailingZeros(positions);
+							positions &= positions - 1;
+							int[] cross = geometry.unitCells(byRow == 0 ? size + position : position);
+							for(int i = 0; i < size; i++) {
+								if(i != a && i != b && eliminate(cross[i], bit)) {
+									count++;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 現在の確定値から盤面を作成する
+	 * @return Board : 確定したセルのみ値を持つ盤面
+	 */
+	private Board toBoard() {
+		Board board = new Board(size);
+		for(int cell = 0; cell < geometry.CELLS; cell++) {
+			if(values[cell] == BLANK) {
+				continue;
+			}
+			try {
+				board.setCell(geometry.rowOf(cell)+1, geometry.colOf(cell)+1, values[cell]+1);
+			}catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * 解き方のテクニック
+	 * 宣言順に簡単なものから適用する。重みは難易度の点数に利用する。
+	 */
+	public enum Technique {
+		NAKED_SINGLE(1, Difficulty.EASY),
+		HIDDEN_SINGLE(2, Difficulty.EASY),
+		LOCKED_CANDIDATES(5, Difficulty.MEDIUM),
+		NAKED_PAIR(8, Difficulty.MEDIUM),
+		HIDDEN_PAIR(10, Difficulty.MEDIUM),
+		NAKED_TRIPLE(15, Difficulty.HARD),
+		HIDDEN_TRIPLE(18, Difficulty.HARD),
+		X_WING(25, Difficulty.HARD),
+		SEARCH(100, Difficulty.EXPERT);
+
+		public final int weight; //1回の利用あたりの点数
+		public final Difficulty difficulty; //このテクニックが必要な問題の難易度
+
+		/**
+		 * コンストラクタ
+		 * @param weight : int : 1回の利用あたりの点数
+		 * @param difficulty : Difficulty : このテクニックが必要な問題の難易度
+		 */
+		Technique(int weight, Difficulty difficulty) {
+			this.weight = weight;
+			this.difficulty = difficulty;
+		}
+	}
+
+	/**
+	 * 難易度の評価結果
+	 */
+	public static class Rating {
+		public final Map<Technique, Integer> usage; //テクニックごとの利用回数
+		public final int score; //利用回数と重みの積の合計
+		public final Difficulty difficulty; //利用した最も難しいテクニックの難易度
+		public final Board solution; //解の盤面
+
+		/**
+		 * コンストラクタ
+		 * @param usage : Map<Technique, Integer> : テクニックごとの利用回数(コピーして保持する)
+		 * @param solution : Board : 解の盤面
+		 */
+		Rating(Map<Technique, Integer> usage, Board solution) {
+			this.usage = new EnumMap<>(Technique.class);
+			this.usage.putAll(usage);
+			int score = 0;
+			Difficulty difficulty = Difficulty.EASY;
+			for(Map.Entry<Technique, Integer> entry : this.usage.entrySet()) {
+				score += entry.getKey().weight * entry.getValue();
+				if(entry.getKey().difficulty.compareTo(difficulty) > 0) {
+					difficulty = entry.getKey().difficulty;
+				}
+			}
+			this.score = score;
+			this.difficulty = difficulty;
+			this.solution = solution;
+		}
+
+		@Override
+		public String toString() {
+			return difficulty + " (score " + score + ") " + usage;
+		}
+	}
+}
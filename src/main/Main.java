@@ -1,10 +1,20 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class Main {
 
 	public static void main(String[] args) {
+		//引数があれば対話なしの一括処理を行う
+		if(args.length > 0) {
+			System.exit(BatchCli.run(args));
+		}
+
+		//サイズの入力を待つ間に問題の生成を始める
+		PuzzlePool.shared();
+
 		Scanner scan = new Scanner(System.in);
 
 		String input;
@@ -12,11 +22,40 @@ public class Main {
 		
 		Sudoku game;
 
+		//前回のゲームの記録が残っていれば再開するか確認する
+		MoveJournal saved = null;
+		Path journalFile = MoveJournal.configuredFile();
+		if(journalFile != null) {
+			try {
+				saved = MoveJournal.open(journalFile, MoveJournal.configuredPolicy());
+			}catch(IOException e) {
+				System.out.println("前回のゲームの記録を読み込めませんでした : " + e.getMessage());
+			}
+		}
+		if(saved != null) {
+			System.out.print("前回のゲームの記録があります。再開しますか? (y/n) : ");
+			if(scan.next().equalsIgnoreCase("y")) {
+				try {
+					game = new Sudoku(scan, saved);
+					game.execGame();
+					return;
+				}catch(IllegalArgumentException e) {
+					//記録の問題が壊れている場合は新しいゲームを始める
+					System.out.println("前回のゲームを再開できませんでした : " + e.getMessage());
+				}
+			}
+			try {
+				saved.close();
+			}catch(IOException e) {
+				System.out.println("前回のゲームの記録を閉じられませんでした : " + e.getMessage());
+			}
+		}
 
 		System.out.println("======= 数独 =======");
 		System.out.println("-- 盤面のサイズ指定 -- ");
 		System.out.println("・標準サイズ: 9");
 		System.out.println("・ミニサイズ: 4");
+		System.out.println("・大きいサイズ: 16, 25");
 		System.out.println("*それ以外の場合は標準サイズで開始します");
 		System.out.print(": ");
 		input = scan.next();
@@ -29,8 +68,8 @@ public class Main {
 		}
 		if(isDigit) {
 			int size = Integer.parseInt(input);
-			if(size == 4) {
-				game = new Sudoku(scan, 4);
+			if(size == 4 || size == 16 || size == 25) {
+				game = new Sudoku(scan, size);
 			}else {
 				game = new Sudoku(scan, 9);
 			}
@@ -0,0 +1,239 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * メモリマップによる問題ファイルの読み込み
+ * 1行1問のテキスト形式(PuzzleFormat)のファイルを行の境界で区切られたチャンクに分割し、
+ * チャンクごとにメモリマップして読み込む。
+ * 行はStringを作らずにマップしたバッファから直接セルの値の配列に変換するため、
+ * ファイルの大きさによらず、メモリ使用量はチャンクの大きさ程度で一定になる。
+ */
+public class MappedPuzzleReader implements Closeable {
+	public static final long DEFAULTCHUNKSIZE = 32L << 20; //チャンクの大きさの目安[byte]
+	private static final int MAXLINE = 1024; //境界を探すときに読み込む長さ[byte]
+
+	private final FileChannel channel; //読み込むファイル
+	private final long fileSize; //ファイルの大きさ[byte]
+
+	/**
+	 * 1問分の盤面を受け取る処理
+	 * スレッドごとに生成されるため、ソルバなどの作業領域を持ってよい。
+	 */
+	public interface PuzzleConsumer {
+		/**
+		 * 1問を処理する
+		 * 配列は次の問題の読み込みで上書きされるため、保持する場合はコピーすること。
+		 * @param size : int : 盤面の一辺の長さ
+		 * @param values : int[] : セル番号ごとの値[0, size) か SearchState.BLANK
+		 */
+		void accept(int size, int[] values);
+
+		/**
+		 * 盤面として解釈できない行を読み飛ばしたときに呼ばれる
+		 */
+		default void invalid() {
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param path : Path : 読み込むファイル
+	 * @throws IOException : ファイルを開けなかったときのエラー
+	 */
+	public MappedPuzzleReader(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.fileSize = channel.size();
+	}
+
+	/**
+	 * ファイルを行の境界で区切られたチャンクに分割する
+	 * @param chunkSize : long : チャンクの大きさの目安[byte]
+	 * @return List<Chunk> : ファイル先頭からのチャンク
+	 * @throws IOException : 読み込みに失敗したときのエラー
+	 */
+	public List<Chunk> split(long chunkSize) throws IOException {
+		List<Chunk> chunks = new ArrayList<>();
+		ByteBuffer buffer = ByteBuffer.allocate(MAXLINE);
+		long start = 0;
+		while(start < fileSize) {
+			//1回でマップできる大きさに収める
+			long end = Math.min(fileSize, start + Math.max(1, Math.min(chunkSize, Integer.MAX_VALUE - MAXLINE)));
+			//チャンクの終わりを次の改行の直後まで延ばす
+			while(end < fileSize) {
+				buffer.clear();
+				int read = channel.read(buffer, end);
+				if(read <= 0) {
+					end = fileSize;
+					break;
+				}
+				int newline = -1;
+				for(int i = 0; i < read; i++) {
+					if(buffer.get(i) == '\n') {
+						newline = i;
+						break;
+					}
+				}
+				if(newline >= 0) {
+					end += newline + 1;
+					break;
+				}
+				end += read;
+			}
+			chunks.add(new Chunk(start, Math.min(end, fileSize)));
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * チャンク内の全ての問題を読み込む
+	 * @param chunk : Chunk : 読み込むチャンク
+	 * @param consumer : PuzzleConsumer : 問題を受け取る処理
+	 * @return long : 読み込んだ問題数(空行と不正な行を除く)
+	 * @throws IOException : 読み込みに失敗したときのエラー
+	 */
+	public long read(Chunk chunk, PuzzleConsumer consumer) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+		int limit = buffer.limit();
+		int[] values = null;
+		long count = 0;
+		int position = 0;
+		while(position < limit) {
+			//盤面部分の長さを求める
+			int lineStart = position;
+			while(position < limit && !PuzzleFormat.isSeparator(buffer.get(position))) {
+				position++;
+			}
+			int length = position - lineStart;
+			//行の残り(解答などの付加情報)を読み飛ばす
+			while(position < limit && buffer.get(position) != '\n') {
+				position++;
+			}
+			int lineEnd = position;
+			position++;
+			if(length == 0) {
+				//空行(改行のみ)は読み飛ばし、空白などで始まる行は不正な行として数える
+				if(lineEnd > lineStart && !(lineEnd - lineStart == 1 && buffer.get(lineStart) == '\r')) {
+					consumer.invalid();
+				}
+				continue;
+			}
+
+			int size = PuzzleFormat.sizeOf(length);
+			if(size == 0) {
+				consumer.invalid();
+				continue;
+			}
+			if(values == null || values.length != length) {
+				values = new int[length];
+			}
+			boolean valid = true;
+			for(int i = 0; i < length; i++) {
+				int value = PuzzleFormat.valueOf(buffer.get(lineStart + i), size);
+				if(value == PuzzleFormat.INVALID) {
+					valid = false;
+					break;
+				}
+				values[i] = value - 1;
+			}
+			if(!valid) {
+				consumer.invalid();
+				continue;
+			}
+			consumer.accept(size, values);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 全てのチャンクを複数スレッドで読み込む
+	 * 各スレッドは未処理のチャンクを1つずつ取り出して読み込む。
+	 * @param threads : int : スレッド数
+	 * @param chunkSize : long : チャンクの大きさの目安[byte]
+	 * @param factory : Supplier<PuzzleConsumer> : スレッドごとに問題を受け取る処理を生成する
+	 * @return long : 読み込んだ問題数
+	 * @throws IOException : 読み込みに失敗したときのエラー
+	 * @throws InterruptedException : 待機中に割り込まれたときのエラー
+	 */
+	public long forEach(int threads, long chunkSize, Supplier<PuzzleConsumer> factory) throws IOException, InterruptedException {
+		List<Chunk> chunks = split(chunkSize);
+		int workers = Math.max(1, Math.min(threads, chunks.size()));
+		AtomicInteger next = new AtomicInteger();
+		AtomicLong total = new AtomicLong();
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int i = 0; i < workers; i++) {
+				futures.add(executor.submit(() -> {
+					PuzzleConsumer consumer = factory.get();
+					for(int index = next.getAndIncrement(); index < chunks.size(); index = next.getAndIncrement()) {
+						total.addAndGet(read(chunks.get(index), consumer));
+					}
+					return null;
+				}));
+			}
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				}catch(ExecutionException e) {
+					if(e.getCause() instanceof IOException) {
+						throw (IOException)e.getCause();
+					}
+					throw new IllegalStateException("問題の読み込みに失敗しました", e.getCause());
+				}
+			}
+		}finally {
+			executor.shutdownNow();
+		}
+		return total.get();
+	}
+
+	/**
+	 * ファイルの大きさを返す
+	 * @return long : ファイルの大きさ[byte]
+	 */
+	public long size() {
+		return fileSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * ファイルの一部分(行の境界で区切られている)
+	 */
+	public static final class Chunk {
+		public final long start; //先頭の位置[byte]
+		public final long end; //末尾の次の位置[byte]
+
+		/**
+		 * コンストラクタ
+		 * @param start : long : 先頭の位置[byte]
+		 * @param end : long : 末尾の次の位置[byte]
+		 */
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+}
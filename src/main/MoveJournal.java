@@ -0,0 +1,521 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ゲームの手の追記専用の記録
+ * 先頭に問題(シード値・ヒント・解答)を書き、以降は1手ごとに固定長のレコードを追記する。
+ *   手     : 種類(1) セル番号(2) 元の値(1) 新しい値(1)
+ *   戻す   : 種類(1)
+ *   やり直す : 種類(1)
+ *   スナップショット : 種類(1) 手の位置(4) 手の数(4) 盤面(PuzzleCodec.encodeBoard)
+ * SNAPSHOTINTERVAL件ごとに盤面のスナップショットを書くため、再開時に盤面に適用するのは最後のスナップショット以降のレコードのみで済む。
+ * 戻す・やり直すはメモリ上の手の配列の位置を動かして盤面の1セルのみを書き換え、盤面はコピーしない。
+ * 1手分のレコードはバッファにまとめて1回で書き込み、ディスクへの反映(fsync)はSyncPolicyに従ってまとめて行う。
+ * BATCHの時間による反映は共有のタイマーのスレッドで行うため、記録の操作はインスタンスのロックを取って行う。
+ * ファイルを指定しない場合はメモリ上でのみ記録する。
+ */
+public class MoveJournal implements Closeable {
+	public static final String FILEPROPERTY = "sudoku.journal"; //記録するファイルを指定するシステムプロパティ
+	public static final String SYNCPROPERTY = "sudoku.journal.sync"; //ディスクへの反映の方針を指定するシステムプロパティ
+	public static final int SNAPSHOTINTERVAL = 64; //スナップショットを書く間隔[レコード数]
+	public static final int SYNCMOVES = 32; //BATCHでディスクに反映する間隔[手]
+	public static final long SYNCMILLIS = 1000; //BATCHでディスクに反映する間隔[ms]
+
+	private static final int MAGIC = 0x53444a31; //ファイルの先頭の識別子("SDJ1")
+	private static final byte MOVE = 1; //手のレコード
+	private static final byte UNDO = 2; //戻すレコード
+	private static final byte REDO = 3; //やり直すレコード
+	private static final byte SNAPSHOT = 4; //スナップショットのレコード
+	private static final int MOVEBYTES = 5; //手のレコードの大きさ[byte]
+	private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "journal-sync");
+		thread.setDaemon(true);
+		return thread;
+	}); //BATCHで時間の経過した記録をディスクに反映するタイマー(最初の予約でスレッドを作る)
+
+	/**
+	 * ディスクへの反映(fsync)の方針
+	 * どの方針でもレコードは1手ごとにファイルに書き込むため、プロセスが落ちても手は失われない。
+	 * 方針はOSごと落ちた場合に失われうる手の数を決める。
+	 */
+	public enum SyncPolicy {
+		ALWAYS, //1手ごとに反映する
+		BATCH, //SYNCMOVES手ごとか、反映していない最初の手からSYNCMILLIS経過したときに(次の手を待たずに)反映する
+		CLOSE; //閉じるときのみ反映する
+	}
+
+	private final Puzzle puzzle; //記録している問題
+	private final SyncPolicy policy; //ディスクへの反映の方針
+	private final Path file; //記録するファイル(メモリ上でのみ記録する場合はnull)
+	private FileChannel channel; //記録するファイル(書き込みに失敗した後はnull)
+	private long position; //次のレコードを書く位置[byte]
+	private final ByteBuffer pending; //書き込み前のレコード
+	private ByteBuffer recorded; //再開するときに盤面に適用するレコード(restoreまで保持する)
+	private int lastSnapshot = -1; //recordedの最後のスナップショットの位置(なければ-1)
+
+	private int[] cells = new int[64]; //手ごとのセル番号
+	private byte[] oldValues = new byte[64]; //手ごとの元の値(0は空欄)
+	private byte[] newValues = new byte[64]; //手ごとの新しい値(0は空欄)
+	private int count; //やり直せる手を含めた手の数
+	private int cursor; //盤面に適用されている手の数
+	private int sinceSnapshot; //最後のスナップショット以降のレコード数
+	private int unsynced; //ディスクに反映していないレコード数
+	private boolean syncScheduled; //タイマーに反映を予約していればtrue
+
+	/**
+	 * コンストラクタ
+	 */
+	private MoveJournal(Puzzle puzzle, SyncPolicy policy, Path file, FileChannel channel) {
+		this.puzzle = puzzle;
+		this.policy = policy;
+		this.file = file;
+		this.channel = channel;
+		this.pending = ByteBuffer.allocate(MOVEBYTES + snapshotBytes(puzzle.board.SIZE));
+	}
+
+	/**
+	 * 新しいゲームの記録を始める
+	 * ファイルが既にあれば上書きする。
+	 * @param file : Path : 記録するファイル(メモリ上でのみ記録する場合はnull)
+	 * @param policy : SyncPolicy : ディスクへの反映の方針
+	 * @param puzzle : Puzzle : 問題(盤面はヒントのみの状態)
+	 * @return MoveJournal : 記録
+	 * @throws IOException : ファイルに書き込めなかったときのエラー
+	 */
+	public static MoveJournal create(Path file, SyncPolicy policy, Puzzle puzzle) throws IOException {
+		if(file == null) {
+			return new MoveJournal(puzzle, policy, null, null);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			int size = puzzle.board.SIZE;
+			ByteBuffer header = ByteBuffer.allocate(headerBytes(size, puzzle.solution != null));
+			header.putInt(MAGIC).put((byte)size).putLong(puzzle.seed).put((byte)(puzzle.solution != null ? 1 : 0));
+			header.put(PuzzleCodec.encodeBoard(puzzle.board));
+			if(puzzle.solution != null) {
+				header.put(puzzle.solution);
+			}
+			header.flip();
+			writeFully(channel, header, 0);
+			channel.force(false);
+			MoveJournal journal = new MoveJournal(puzzle, policy, file, channel);
+			journal.position = header.limit();
+			return journal;
+		}catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 記録されたゲームを開き、続きを記録できる状態にする
+	 * レコードは検証のみ行い、盤面への適用はrestoreで行う。
+	 * 書き込み途中で終了した場合の不完全な末尾や、不正なレコード以降は切り捨てる。
+	 * @param file : Path : 記録されたファイル
+	 * @param policy : SyncPolicy : ディスクへの反映の方針
+	 * @return MoveJournal : 記録(ファイルがないか、問題を読み込めない場合はnull)
+	 * @throws IOException : ファイルを読み込めなかったときのエラー
+	 */
+	public static MoveJournal open(Path file, SyncPolicy policy) throws IOException {
+		ByteBuffer data;
+		try {
+			data = ByteBuffer.wrap(Files.readAllBytes(file));
+		}catch(NoSuchFileException e) {
+			return null;
+		}
+		Puzzle puzzle = readHeader(data);
+		if(puzzle == null) {
+			return null;
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		MoveJournal journal = new MoveJournal(puzzle, policy, file, channel);
+		journal.recorded = data.slice();
+		journal.scan();
+		journal.position = data.position() + journal.recorded.limit();
+		channel.truncate(journal.position);
+		return journal;
+	}
+
+	/**
+	 * システムプロパティで指定されたファイルを返す
+	 * @return Path : ファイル(指定がなければnull)
+	 */
+	public static Path configuredFile() {
+		String name = System.getProperty(FILEPROPERTY);
+		return name == null ? null : Paths.get(name);
+	}
+
+	/**
+	 * システムプロパティで指定された方針を返す
+	 * @return SyncPolicy : 方針(指定がないか不正な場合はBATCH)
+	 */
+	public static SyncPolicy configuredPolicy() {
+		try {
+			return SyncPolicy.valueOf(System.getProperty(SYNCPROPERTY, SyncPolicy.BATCH.name()).toUpperCase());
+		}catch(IllegalArgumentException e) {
+			return SyncPolicy.BATCH;
+		}
+	}
+
+	/**
+	 * ヘッダの大きさを返す
+	 */
+	private static int headerBytes(int size, boolean hasSolution) {
+		return 4 + 1 + 8 + 1 + PuzzleCodec.boardBytes(size) * (hasSolution ? 2 : 1);
+	}
+
+	/**
+	 * スナップショットのレコードの大きさを返す
+	 */
+	private static int snapshotBytes(int size) {
+		return 1 + 4 + 4 + PuzzleCodec.boardBytes(size);
+	}
+
+	/**
+	 * ヘッダから問題を読み込む
+	 * @param data : ByteBuffer : ファイルの内容(ヘッダの直後まで読み進める)
+	 * @return Puzzle : 問題(読み込めない場合はnull)
+	 */
+	private static Puzzle readHeader(ByteBuffer data) {
+		if(data.remaining() < headerBytes(0, false) || data.getInt() != MAGIC) {
+			return null;
+		}
+		int size = data.get();
+		long seed = data.getLong();
+		boolean hasSolution = data.get() != 0;
+		if(PuzzleFormat.sizeOf(size * size) == 0 || data.remaining() < headerBytes(size, hasSolution) - headerBytes(0, false)) {
+			return null;
+		}
+		byte[] clues = new byte[PuzzleCodec.boardBytes(size)];
+		data.get(clues);
+		byte[] solution = null;
+		if(hasSolution) {
+			solution = new byte[clues.length];
+			data.get(solution);
+		}
+		return new Puzzle(seed, PuzzleCodec.decodeBoard(clues, size), solution);
+	}
+
+	/**
+	 * レコードを検証し、最後の完全で正しいレコードまでにrecordedを切り詰める
+	 * 手の位置と数のみを数え、手の配列は作らない。
+	 */
+	private void scan() {
+		int size = puzzle.board.SIZE;
+		int moves = 0;
+		int applied = 0;
+		ByteBuffer data = recorded;
+		while(data.hasRemaining()) {
+			int start = data.position();
+			byte type = data.get();
+			boolean valid;
+			if(type == MOVE) {
+				valid = data.remaining() >= MOVEBYTES - 1;
+				if(valid) {
+					int cell = data.getShort() & 0xffff;
+					int oldValue = data.get();
+					int newValue = data.get();
+					valid = cell < size * size && 0 <= oldValue && oldValue <= size && 0 <= newValue && newValue <= size;
+					applied++;
+					moves = applied;
+				}
+			}else if(type == UNDO) {
+				valid = applied > 0;
+				applied--;
+			}else if(type == REDO) {
+				valid = applied < moves;
+				applied++;
+			}else if(type == SNAPSHOT) {
+				valid = data.remaining() >= snapshotBytes(size) - 1 && data.getInt() == applied && data.getInt() == moves;
+				if(valid) {
+					data.position(start + snapshotBytes(size));
+					lastSnapshot = start;
+				}
+			}else {
+				valid = false;
+			}
+			if(!valid) {
+				data.position(start);
+				break;
+			}
+		}
+		data.limit(data.position()).position(0);
+	}
+
+	/**
+	 * 記録されている問題を返す
+	 * @return Puzzle : 問題(盤面はヒントのみの状態)
+	 */
+	public Puzzle getPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * openで開いた記録の最後の状態を盤面に復元する
+	 * 手の配列は全てのレコードから作るが、盤面には最後のスナップショットの値を読み込み、それ以降のレコードのみを適用する。
+	 * @param board : Board : ヒントを問題盤面として登録済みの盤面
+	 */
+	public void restore(Board board) {
+		if(recorded == null) {
+			return;
+		}
+		int size = board.SIZE;
+		ByteBuffer data = recorded;
+		recorded = null;
+		while(data.hasRemaining()) {
+			int start = data.position();
+			boolean apply = start > lastSnapshot;
+			byte type = data.get();
+			if(type == MOVE) {
+				int cell = data.getShort() & 0xffff;
+				int oldValue = data.get();
+				int newValue = data.get();
+				push(cell, oldValue, newValue);
+				if(apply) {
+					setCell(board, cell, newValue);
+				}
+			}else if(type == UNDO) {
+				cursor--;
+				if(apply) {
+					setCell(board, cells[cursor], oldValues[cursor]);
+				}
+			}else if(type == REDO) {
+				if(apply) {
+					setCell(board, cells[cursor], newValues[cursor]);
+				}
+				cursor++;
+			}else {
+				data.position(start + 1 + 4 + 4);
+				byte[] values = new byte[PuzzleCodec.boardBytes(size)];
+				data.get(values);
+				if(start == lastSnapshot) {
+					for(int cell = 0; cell < size * size; cell++) {
+						setCell(board, cell, PuzzleCodec.cellAt(values, size, cell));
+					}
+				}
+				sinceSnapshot = -1;
+			}
+			sinceSnapshot++;
+		}
+	}
+
+	/**
+	 * 盤面に値を入力した手を記録する
+	 * 戻した手がある場合、それ以降の手はやり直せなくなる。
+	 * @param board : Board : 入力後の盤面
+	 * @param row : int : 行のインデックス[1, 盤面の一辺の長さ]
+	 * @param col : int : 列のインデックス[1, 盤面の一辺の長さ]
+	 * @param oldValue : int : 入力前の値(空欄は0)
+	 * @throws IOException : ファイルに書き込めなかったときのエラー(以降はメモリ上でのみ記録する)
+	 */
+	public synchronized void record(Board board, int row, int col, int oldValue) throws IOException {
+		int cell = (row - 1) * board.SIZE + (col - 1);
+		int newValue = board.getCell(row, col);
+		push(cell, oldValue, newValue);
+		pending.put(MOVE).putShort((short)cell).put((byte)oldValue).put((byte)newValue);
+		commit(board);
+	}
+
+	/**
+	 * 最後の手を戻し、盤面のそのセルを元の値にする
+	 * @param board : Board : 盤面
+	 * @return int : 戻した手のセル番号(戻せる手がなければ-1)
+	 * @throws IOException : ファイルに書き込めなかったときのエラー(以降はメモリ上でのみ記録する)
+	 */
+	public synchronized int undo(Board board) throws IOException {
+		if(cursor == 0) {
+			return -1;
+		}
+		cursor--;
+		setCell(board, cells[cursor], oldValues[cursor]);
+		pending.put(UNDO);
+		commit(board);
+		return cells[cursor];
+	}
+
+	/**
+	 * 戻した手をやり直し、盤面のそのセルを新しい値にする
+	 * @param board : Board : 盤面
+	 * @return int : やり直した手のセル番号(やり直せる手がなければ-1)
+	 * @throws IOException : ファイルに書き込めなかったときのエラー(以降はメモリ上でのみ記録する)
+	 */
+	public synchronized int redo(Board board) throws IOException {
+		if(cursor == count) {
+			return -1;
+		}
+		setCell(board, cells[cursor], newValues[cursor]);
+		cursor++;
+		pending.put(REDO);
+		commit(board);
+		return cells[cursor - 1];
+	}
+
+	/**
+	 * 盤面に適用されている手の数を返す
+	 * @return int : 手の数
+	 */
+	public int getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * やり直せる手を含めた手の数を返す
+	 * @return int : 手の数
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * ファイルに記録しているか判定する
+	 * @return boolean : ファイルに記録していればtrue
+	 */
+	public synchronized boolean isPersistent() {
+		return channel != null;
+	}
+
+	/**
+	 * 書き込んだ内容をディスクに反映する
+	 * @throws IOException : 書き込みに失敗したときのエラー
+	 */
+	public synchronized void flush() throws IOException {
+		if(channel != null) {
+			channel.force(false);
+		}
+		unsynced = 0;
+	}
+
+	/**
+	 * タイマーから呼ばれ、反映していない手があればディスクに反映する
+	 * 反映に失敗した場合はファイルを閉じ、以降はメモリ上でのみ記録する。
+	 */
+	private synchronized void syncPending() {
+		syncScheduled = false;
+		if(channel == null || unsynced == 0) {
+			return;
+		}
+		try {
+			flush();
+		}catch(IOException e) {
+			System.err.println("手の記録をディスクに反映できませんでした: " + e.getMessage());
+			try {
+				channel.close();
+			}catch(IOException ignored) {
+			}
+			channel = null;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(channel == null) {
+			return;
+		}
+		try {
+			flush();
+		}finally {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * 記録を閉じてファイルを削除する
+	 * 終わったゲームを再開の対象にしないために利用する。
+	 * @throws IOException : 削除に失敗したときのエラー
+	 */
+	public synchronized void discard() throws IOException {
+		if(channel != null) {
+			channel.close();
+			channel = null;
+		}
+		if(file != null) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * 手を配列の位置cursorに書き、それ以降の手を捨てる
+	 */
+	private void push(int cell, int oldValue, int newValue) {
+		if(cursor == cells.length) {
+			cells = Arrays.copyOf(cells, cursor * 2);
+			oldValues = Arrays.copyOf(oldValues, cursor * 2);
+			newValues = Arrays.copyOf(newValues, cursor * 2);
+		}
+		cells[cursor] = cell;
+		oldValues[cursor] = (byte)oldValue;
+		newValues[cursor] = (byte)newValue;
+		cursor++;
+		count = cursor;
+	}
+
+	/**
+	 * 盤面の1セルを書き換える(問題盤面として登録されたセルは書き換えない)
+	 */
+	private static void setCell(Board board, int cell, int value) {
+		board.restoreCell(cell / board.SIZE + 1, cell % board.SIZE + 1, value);
+	}
+
+	/**
+	 * バッファの1手分のレコードを書き込む
+	 * SNAPSHOTINTERVAL件ごとにスナップショットを同じ書き込みに含め、方針に従ってディスクに反映する。
+	 * BATCHでは、反映していない最初の手を書いたときにSYNCMILLIS後の反映をタイマーに予約する。
+	 * 書き込みに失敗した場合はファイルを閉じ、以降はメモリ上でのみ記録する。
+	 * @param board : Board : レコードを適用した後の盤面
+	 */
+	private void commit(Board board) throws IOException {
+		if(++sinceSnapshot >= SNAPSHOTINTERVAL) {
+			pending.put(SNAPSHOT).putInt(cursor).putInt(count).put(PuzzleCodec.encodeBoard(board));
+			sinceSnapshot = 0;
+		}
+		pending.flip();
+		if(channel == null) {
+			pending.clear();
+			return;
+		}
+		try {
+			int length = pending.limit();
+			writeFully(channel, pending, position);
+			position += length;
+			unsynced++;
+			if(policy == SyncPolicy.ALWAYS || (policy == SyncPolicy.BATCH && unsynced >= SYNCMOVES)) {
+				flush();
+			}else if(policy == SyncPolicy.BATCH && !syncScheduled) {
+				syncScheduled = true;
+				SYNCER.schedule(this::syncPending, SYNCMILLIS, TimeUnit.MILLISECONDS);
+			}
+		}catch(IOException e) {
+			try {
+				channel.close();
+			}catch(IOException ignored) {
+			}
+			channel = null;
+			throw e;
+		}finally {
+			pending.clear();
+		}
+	}
+
+	/**
+	 * バッファの内容を全て書き込む
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 手の台本
+ * 1行に「行 列 値」を空白区切りで持つテキストを、指定の手数ずつまとめて読み込む。
+ * 空行と#で始まる行は読み飛ばす。
+ * Sudoku.execScriptに渡すと、対話の入力の代わりに台本の手でゲームを進められる。
+ */
+public class MoveScript implements Closeable {
+	public static final int DEFAULTBATCH = 1024; //1度に読み込む手数の標準値
+
+	private final BufferedReader reader; //台本の入力
+	private final int[] rows; //バッチの手ごとの行[1, 盤面の一辺の長さ]
+	private final int[] cols; //バッチの手ごとの列[1, 盤面の一辺の長さ]
+	private final int[] values; //バッチの手ごとの値[1, 盤面の一辺の長さ]
+	private int length; //バッチの手数
+	private long lineNumber; //読み込んだ行数
+	private int position; //読み込み中の行の位置
+
+	/**
+	 * コンストラクタ
+	 * @param reader : Reader : 台本の入力
+	 * @param batchSize : int : 1度に読み込む手数
+	 */
+	public MoveScript(Reader reader, int batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("バッチの手数が不正です: " + batchSize);
+		}
+		this.reader = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+		rows = new int[batchSize];
+		cols = new int[batchSize];
+		values = new int[batchSize];
+	}
+
+	/**
+	 * ファイルから台本を開く
+	 * @param file : Path : 台本のファイル
+	 * @param batchSize : int : 1度に読み込む手数
+	 * @return MoveScript : 台本
+	 * @throws IOException : ファイルを開けなかったときのエラー
+	 */
+	public static MoveScript open(Path file, int batchSize) throws IOException {
+		return new MoveScript(Files.newBufferedReader(file, StandardCharsets.UTF_8), batchSize);
+	}
+
+	/**
+	 * 次のバッチを読み込む
+	 * @return boolean : 1手以上読み込めればtrue(台本の終わりならfalse)
+	 * @throws IOException : 読み込みに失敗したときのエラー
+	 * @throws IllegalArgumentException : 「行 列 値」の形式でない行があったときのエラー
+	 */
+	public boolean nextBatch() throws IOException {
+		length = 0;
+		String line;
+		while(length < rows.length && (line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			position = 0;
+			rows[length] = nextInt(line);
+			cols[length] = nextInt(line);
+			values[length] = nextInt(line);
+			skipSpaces(line);
+			if(position != line.length()) {
+				throw new IllegalArgumentException("台本の" + lineNumber + "行目が「行 列 値」の形式ではありません");
+			}
+			length++;
+		}
+		return length > 0;
+	}
+
+	/**
+	 * 読み込み中の行から空白区切りの整数を1つ読む
+	 * 1行ごとに正規表現で分割しないよう、文字を順に読む。
+	 * @param line : String : 読み込み中の行
+	 * @return int : 整数
+	 */
+	private int nextInt(String line) {
+		skipSpaces(line);
+		if(position == line.length()) {
+			throw new IllegalArgumentException("台本の" + lineNumber + "行目が「行 列 値」の形式ではありません");
+		}
+		boolean negative = line.charAt(position) == '-';
+		if(negative) {
+			position++;
+		}
+		int start = position;
+		int value = 0;
+		while(position < line.length() && position - start < 9) {
+			char ch = line.charAt(position);
+			if(ch < '0' || '9' < ch) {
+				break;
+			}
+			value = value * 10 + (ch - '0');
+			position++;
+		}
+		if(position == start || (position < line.length() && !Character.isWhitespace(line.charAt(position)))) {
+			throw new IllegalArgumentException("台本の" + lineNumber + "行目に数値以外が含まれています");
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * 読み込み中の行の空白を読み飛ばす
+	 */
+	private void skipSpaces(String line) {
+		while(position < line.length() && Character.isWhitespace(line.charAt(position))) {
+			position++;
+		}
+	}
+
+	/**
+	 * バッチの手数を返す
+	 * @return int : 手数
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * バッチの手の行を返す
+	 * @param index : int : バッチ内の番号[0, length())
+	 * @return int : 行
+	 */
+	public int row(int index) {
+		return rows[index];
+	}
+
+	/**
+	 * バッチの手の列を返す
+	 * @param index : int : バッチ内の番号[0, length())
+	 * @return int : 列
+	 */
+	public int col(int index) {
+		return cols[index];
+	}
+
+	/**
+	 * バッチの手の値を返す
+	 * @param index : int : バッチ内の番号[0, length())
+	 * @return int : 値
+	 */
+	public int value(int index) {
+		return values[index];
+	}
+
+	/**
+	 * 台本の入力を閉じる
+	 * @throws IOException : 閉じられなかったときのエラー
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,416 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ForkJoinPoolによる並列数独ソルバ
+ * 探索木の浅い部分では候補ごとにタスクを分割し、ワークスティーリングで各スレッドに分配する。
+ * 分割しなくなった部分木はタスク内でBitSolverと同じMRV探索(16x16以上では隠れたシングルの確定を含む)を行う。
+ * 見つかった解の個数は全タスクで共有し、上限に達したら全タスクが協調して探索を打ち切る。
+ * 探索ノード数も全タスクで共有し、上限を指定した探索では上限に達した時点で打ち切ってUNKNOWNを返す。
+ * ノード数はタスクごとにNODEBATCHずつまとめて加えるため、打ち切るまでのノード数は上限をわずかに超えることがある。
+ * 探索の状態はタスクごとに持つため、インスタンスは複数スレッドから利用できる。
+ * 探索の統計はタスクごとに数え、タスクの終了時にまとめて加える。
+ */
+public class ParallelSolver implements Solver {
+	private static final int MAXSPLITDEPTH = 8; //タスクを分割する探索深さの上限
+	private static final int SURPLUSTASKS = 2; //キューにこれ以上タスクが余っていれば分割しない
+	private static final int NODEBATCH = 1024; //共有の探索ノード数にまとめて加えるノード数(2のべき乗)
+
+	private static ForkJoinPool sharedPool; //スレッド数を指定しないソルバが共有するスレッドプール
+
+	private final ForkJoinPool pool; //探索に利用するスレッドプール
+	private final boolean ownsPool; //スレッドプールをこのインスタンスで作成したならtrue
+	private final SearchStats stats = new SearchStats(); //探索の統計(statsで同期する)
+
+	/**
+	 * コンストラクタ
+	 * 全てのインスタンスで共有する、CPUのコア数のスレッドを持つスレッドプールを利用する。
+	 * ソルバをいくつ作ってもスレッドは増えないため、スレッドごとにソルバを作ってもよい。
+	 */
+	public ParallelSolver() {
+		this.pool = sharedPool();
+		this.ownsPool = false;
+	}
+
+	/**
+	 * コンストラクタ
+	 * 指定のスレッド数のスレッドプールを作成する。使い終わったらshutdownを呼ぶ必要がある。
+	 * @param parallelism : int : 探索に利用するスレッド数
+	 */
+	public ParallelSolver(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+		this.ownsPool = true;
+	}
+
+	/**
+	 * 共有のスレッドプールを返す(初めて呼ばれたときに作成する)
+	 * ForkJoinPoolのスレッドはデーモンスレッドのため、終了させなくてもプログラムの終了を妨げない。
+	 */
+	private static synchronized ForkJoinPool sharedPool() {
+		if(sharedPool == null) {
+			sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		return sharedPool;
+	}
+
+	/**
+	 * 探索に利用するスレッド数を返す
+	 * @return int : スレッド数
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit) {
+		return countSolutions(board, limit, Long.MAX_VALUE);
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	@Override
+	public int countSolutions(Board board, int limit, long maxNodes) {
+		if(limit <= 0) {
+			return 0;
+		}
+		Search search = new Search(limit, maxNodes, stats);
+		return run(search, board);
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	@Override
+	public Board solve(Board board) {
+		Search search = new Search(1, Long.MAX_VALUE, stats);
+		run(search, board);
+		int[] solution = search.solution.get();
+		if(solution == null) {
+			return null;
+		}
+		int size = board.SIZE;
+		Board answer = new Board(size);
+		for(int i = 0; i < size * size; i++) {
+			try {
+				answer.setCell(i / size + 1, i % size + 1, solution[i]+1);
+			}catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return answer;
+	}
+
+	@Override
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 盤面を読み込んで探索を行い、統計を記録する
+	 * @param search : Search : 探索情報
+	 * @param board : Board : 探索する盤面
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	private int run(Search search, Board board) {
+		SolveEvent event;
+		synchronized(stats) {
+			event = stats.begin();
+		}
+		SearchState state = board.exportState();
+		if(state != null) {
+			pool.invoke(new CountTask(search, state, 0));
+		}
+		int count = search.count();
+		synchronized(stats) {
+			stats.end(event, "PARALLEL", board.SIZE, search.limit, count);
+		}
+		return count;
+	}
+
+	/**
+	 * スレッドプールを終了する
+	 * 共有のスレッドプールを利用している場合は何もしない。
+	 */
+	public void shutdown() {
+		if(ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * 1回の探索で全タスクが共有する情報
+	 */
+	private static class Search {
+		final int limit; //解の個数の上限
+		final long maxNodes; //探索ノード数の上限
+		final SearchStats stats; //探索の統計の記録先
+		final AtomicInteger found = new AtomicInteger(); //見つかった解の個数
+		final AtomicLong nodes = new AtomicLong(); //全タスクで値を置いた回数
+		final AtomicReference<int[]> solution = new AtomicReference<>(); //最初に見つかった解
+		volatile boolean aborted; //ノード数の上限で打ち切ったらtrue
+
+		/**
+		 * コンストラクタ
+		 * @param limit : int : 解の個数の上限
+		 * @param maxNodes : long : 探索ノード数の上限
+		 * @param stats : SearchStats : 探索の統計の記録先
+		 */
+		Search(int limit, long maxNodes, SearchStats stats) {
+			this.limit = limit;
+			this.maxNodes = maxNodes;
+			this.stats = stats;
+		}
+
+		/**
+		 * 探索ノード数を加え、上限に達していれば打ち切りを記録する
+		 * @param count : long : 加えるノード数
+		 */
+		void spend(long count) {
+			if(nodes.addAndGet(count) >= maxNodes) {
+				aborted = true;
+			}
+		}
+
+		/**
+		 * 探索の結果の解の個数を返す
+		 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+		 */
+		int count() {
+			int count = Math.min(found.get(), limit);
+			return aborted && count < limit ? UNKNOWN : count;
+		}
+
+		/**
+		 * タスクで数えた統計を加える
+		 * @param nodes : long : 値を置いた回数
+		 * @param backtracks : long : 引き返した回数
+		 * @param depth : int : 最大の深さ
+		 */
+		void merge(long nodes, long backtracks, int depth) {
+			synchronized(stats) {
+				stats.nodes += nodes;
+				stats.backtracks += backtracks;
+				stats.depth(depth);
+			}
+		}
+
+		/**
+		 * 探索を打ち切るべきか判定する
+		 * @return boolean : 解の個数かノード数が上限に達していればtrue
+		 */
+		boolean isDone() {
+			return aborted || found.get() >= limit;
+		}
+
+		/**
+		 * 解が見つかったことを記録する
+		 * @param state : SearchState : 解の状態
+		 */
+		void record(SearchState state) {
+			if(solution.get() == null) {
+				int[] cells = new int[state.cellCount()];
+				state.copyCells(cells);
+				solution.compareAndSet(null, cells);
+			}
+			found.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 部分木を探索するタスク
+	 * 浅い部分では候補ごとに子タスクへ分割し、深い部分ではタスク内で逐次探索する。
+	 * 結果はSearchに集めるため、タスク自体は値を返さない。直列化はしない。
+	 */
+	@SuppressWarnings("serial")
+	private static class CountTask extends RecursiveAction {
+		private final Search search; //共有する探索情報
+		private final SearchState state; //このタスクが探索する状態(タスク専用)
+		private final int depth; //分割の深さ
+
+		private int[] blanks; //逐次探索で利用する空欄のセル番号
+		private int blankCount; //逐次探索開始時の空欄数
+		private BoardGeometry geometry; //逐次探索で隠れたシングルを探す場合の位置関係の表(探さない場合はnull)
+
+		private long nodes; //このタスクで値を置いた回数
+		private long backtracks; //このタスクで引き返した回数
+		private int maxDepth; //このタスクの逐次探索の最大の深さ
+
+		/**
+		 * コンストラクタ
+		 * @param search : Search : 共有する探索情報
+		 * @param state : SearchState : 探索する状態
+		 * @param depth : int : 分割の深さ
+		 */
+		CountTask(Search search, SearchState state, int depth) {
+			this.search = search;
+			this.state = state;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			if(search.isDone()) {
+				return;
+			}
+			if(depth >= MAXSPLITDEPTH || getSurplusQueuedTaskCount() > SURPLUSTASKS) {
+				searchSequential();
+				search.spend(nodes & (NODEBATCH - 1));
+				search.merge(nodes, backtracks, depth + maxDepth);
+				return;
+			}
+			if(state.countBlanks() == 0) {
+				search.record(state);
+				return;
+			}
+
+			//候補が最も少ない空欄で分割する
+			int best = -1;
+			int bestCandidates = 0;
+			int bestCount = Integer.MAX_VALUE;
+			for(int cell = 0; cell < state.cellCount(); cell++) {
+				if(state.get(cell) != SearchState.BLANK) {
+					continue;
+				}
+				int candidates = state.candidates(cell);
+				int count = Integer.bitCount(candidates);
+				if(count < bestCount) {
+					best = cell;
+					bestCandidates = candidates;
+					bestCount = count;
+				}
+			}
+			if(bestCount == 0) {
+				search.merge(0, 1, depth);
+				return;
+			}
+
+			List<CountTask> tasks = new ArrayList<>();
+			int candidates = bestCandidates;
+			while(candidates != 0) {
+				int bit = candidates & -candidates;
+				candidates ^= bit;
+				SearchState next = new SearchState(state);
+				next.assign(best, Integer.numberOfTrailingZeros(bit));
+				tasks.add(new CountTask(search, next, depth + 1));
+			}
+			search.spend(tasks.size());
+			search.merge(tasks.size(), 0, depth);
+			if(search.isDone()) {
+				return;
+			}
+			invokeAll(tasks);
+		}
+
+		/**
+		 * このタスクの状態以下を逐次探索する
+		 */
+		private void searchSequential() {
+			if(state.SIZE >= BitSolver.HIDDENSINGLESIZE) {
+				geometry = BoardGeometry.of(state.SIZE);
+			}
+			blanks = new int[state.cellCount()];
+			blankCount = 0;
+			for(int cell = 0; cell < state.cellCount(); cell++) {
+				if(state.get(cell) == SearchState.BLANK) {
+					blanks[blankCount++] = cell;
+				}
+			}
+			searchFrom(0);
+		}
+
+		/**
+		 * 候補数が最も少ない空欄を選んで再帰的に探索する
+		 * @param index : int : 埋めた空欄の数
+		 */
+		private void searchFrom(int index) {
+			if(index > maxDepth) {
+				maxDepth = index;
+			}
+			if(index == blankCount) {
+				search.record(state);
+				return;
+			}
+
+			//候補が最も少ない空欄を探す(MRV)
+			int best = index;
+			int bestCandidates = 0;
+			int bestCount = Integer.MAX_VALUE;
+			for(int i = index; i < blankCount; i++) {
+				int candidates = state.candidates(blanks[i]);
+				int count = Integer.bitCount(candidates);
+				if(count < bestCount) {
+					best = i;
+					bestCandidates = candidates;
+					bestCount = count;
+					if(count <= 1) {
+						break;
+					}
+				}
+			}
+			if(bestCount == 0) {
+				backtracks++;
+				return;
+			}
+			if(bestCount > 1 && geometry != null) {
+				int hidden = BitSolver.findHiddenSingle(state, geometry, (1 << state.SIZE) - 1);
+				if(hidden == BitSolver.NOPLACE) {
+					backtracks++;
+					return;
+				}
+				if(hidden >= 0) {
+					int forcedCell = hidden / state.SIZE;
+					for(int i = index; i < blankCount; i++) {
+						if(blanks[i] == forcedCell) {
+							best = i;
+							break;
+						}
+					}
+					bestCandidates = 1 << (hidden % state.SIZE);
+				}
+			}
+
+			int cell = blanks[best];
+			blanks[best] = blanks[index];
+			blanks[index] = cell;
+
+			int mark = state.mark();
+			int candidates = bestCandidates;
+			while(candidates != 0) {
+				int bit = candidates & -candidates;
+				candidates ^= bit;
+
+				state.assign(cell, Integer.numberOfTrailingZeros(bit));
+				if((++nodes & (NODEBATCH - 1)) == 0) {
+					search.spend(NODEBATCH);
+				}
+				searchFrom(index + 1);
+				state.undo(mark);
+
+				//他のタスクも含めて解の個数かノード数が上限に達したら打ち切る
+				if(search.isDone()) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package main;
+
+/**
+ * 生成された問題
+ * 問題盤面と、その盤面を再生成できるシード値の組を保持する。
+ * 生成時に作った解答も、PuzzleCodec.encodeBoardで詰めた形で保持できる。
+ */
+public class Puzzle {
+	public final long seed; //問題を再生成するためのシード値
+	public final Board board; //問題盤面
+	public final byte[] solution; //PuzzleCodec.encodeBoardで詰めた解答(不明な場合はnull)
+
+	/**
+	 * コンストラクタ
+	 * @param seed : long : 問題を再生成するためのシード値
+	 * @param board : Board : 問題盤面
+	 */
+	public Puzzle(long seed, Board board) {
+		this(seed, board, null);
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param seed : long : 問題を再生成するためのシード値
+	 * @param board : Board : 問題盤面
+	 * @param solution : byte[] : PuzzleCodec.encodeBoardで詰めた解答(不明な場合はnull)
+	 */
+	public Puzzle(long seed, Board board, byte[] solution) {
+		this.seed = seed;
+		this.board = board;
+		this.solution = solution;
+	}
+}
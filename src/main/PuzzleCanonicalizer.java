@@ -0,0 +1,323 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * 問題盤面の正規化
+ * 数独の対称性(転置・バンドとスタックの入れ替え・バンド内の行とスタック内の列の入れ替え・数字の付け替え)で
+ * 互いに移り合う盤面を、同じ1つの盤面(正規形)に写す。
+ * 行・列・数字を、ヒントとの関係から決まる不変量で繰り返し色分けし、
+ * 色で区別できないものが残った場合のみ1つを選んで区別する分岐を行う。
+ * 全ての分岐の末端で得られる盤面のうち、辞書順で最小のものを正規形とする。
+ * 生成した問題のほとんどは数回の色分けで全ての行・列・数字が区別できるため、
+ * 対称変換を全て試すことなく16x16や25x25でも短い時間で正規化できる。
+ * インスタンスは作業領域を持つため、スレッド間で共有しないこと。
+ */
+public class PuzzleCanonicalizer {
+	private int size; //盤面の一辺の長さ
+	private int sizeSqrt; //格子の一辺の長さ
+	private int[] grid; //向きを揃えた盤面。値は[0, size) か SearchState.BLANK
+	private int[] clueCounts; //行・列・数字ごとのヒントの数
+	private int[][] digitCells; //数字ごとのヒントのセル番号
+	private int[] candidate; //分岐の末端で得られた盤面(0は空欄、[1, size]は付け替え後の数字)
+	private int[] best; //これまでで辞書順が最小の盤面
+	private boolean found; //bestが設定済みならtrue
+
+	/**
+	 * 盤面の正規形を返す
+	 * 対称性で互いに移り合う盤面からは、同じ正規形が得られる。
+	 * @param board : Board : 正規化する盤面
+	 * @return Board : 正規形の盤面(問題盤面として登録されていない)
+	 */
+	public Board canonicalize(Board board) {
+		int[] values = canonicalValues(board);
+		Board canonical = new Board(size);
+		for(int i = 0; i < values.length; i++) {
+			if(values[i] != 0) {
+				try {
+					canonical.setCell(i / size + 1, i % size + 1, values[i]);
+				}catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * 盤面の正規形の指紋を返す
+	 * 対称性で互いに移り合う盤面からは、同じ指紋が得られる。
+	 * @param board : Board : 正規化する盤面
+	 * @return Fingerprint : 正規形の128ビットの指紋
+	 */
+	public Fingerprint fingerprint(Board board) {
+		int[] values = canonicalValues(board);
+		return Fingerprint.of(size, values);
+	}
+
+	/**
+	 * 盤面の正規形をセル番号ごとの値の配列で返す
+	 * @param board : Board : 正規化する盤面
+	 * @return int[] : 正規形の値(0は空欄、[1, size]は数字)。次の呼び出しで上書きされる
+	 */
+	int[] canonicalValues(Board board) {
+		prepare(board.SIZE);
+		found = false;
+		for(int transpose = 0; transpose < 2; transpose++) {
+			load(board, transpose == 1);
+			int[] color = new int[3 * size];
+			search(color);
+		}
+		return best;
+	}
+
+	/**
+	 * 盤面サイズに合わせて作業領域を確保する
+	 */
+	private void prepare(int size) {
+		if(this.size == size) {
+			return;
+		}
+		this.size = size;
+		this.sizeSqrt = (int)Math.sqrt((double)size);
+		grid = new int[size * size];
+		clueCounts = new int[3 * size];
+		digitCells = new int[size][size];
+		candidate = new int[size * size];
+		best = new int[size * size];
+	}
+
+	/**
+	 * 盤面を指定の向きで読み込み、行・列・数字ごとのヒントの数を数える
+	 * @param board : Board : 読み込む盤面
+	 * @param transpose : boolean : 転置して読み込むならtrue
+	 */
+	private void load(Board board, boolean transpose) {
+		Arrays.fill(clueCounts, 0);
+		for(int row = 0; row < size; row++) {
+			for(int col = 0; col < size; col++) {
+				int value = transpose ? board.getCell(col + 1, row + 1) - 1 : board.getCell(row + 1, col + 1) - 1;
+				grid[row * size + col] = value;
+				if(value != SearchState.BLANK) {
+					clueCounts[row]++;
+					clueCounts[size + col]++;
+					digitCells[value][clueCounts[2 * size + value]++] = row * size + col;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 色分けを行い、区別できないものが残っていれば1つずつ選んで分岐する
+	 * colorは[0, size)が行、[size, 2*size)が列、[2*size, 3*size)が数字の色で、種類ごとに0からの連番とする。
+	 * @param color : int[] : 色(書き換えられる)
+	 */
+	private void search(int[] color) {
+		refine(color);
+
+		//色が最も小さい、2つ以上の要素を持つ色を探す(行・列・数字の順)
+		int group = -1;
+		int target = -1;
+		for(int g = 0; g < 3 && group < 0; g++) {
+			int[] members = new int[size];
+			for(int i = 0; i < size; i++) {
+				members[color[g * size + i]]++;
+			}
+			for(int c = 0; c < size; c++) {
+				if(members[c] > 1) {
+					group = g;
+					target = c;
+					break;
+				}
+			}
+		}
+		if(group < 0) {
+			leaf(color);
+			return;
+		}
+
+		//ヒントのない要素同士は入れ替えても同じ盤面になるため、同じブロック内では1つだけ試す
+		boolean[] triedEmpty = new boolean[size];
+		for(int i = 0; i < size; i++) {
+			int entity = group * size + i;
+			if(color[entity] != target) {
+				continue;
+			}
+			if(clueCounts[entity] == 0) {
+				int block = group == 2 ? 0 : i / sizeSqrt;
+				if(triedEmpty[block]) {
+					continue;
+				}
+				triedEmpty[block] = true;
+			}
+			int[] next = color.clone();
+			for(int j = 0; j < size; j++) {
+				int other = group * size + j;
+				if(next[other] > target || (next[other] == target && j != i)) {
+					next[other]++;
+				}
+			}
+			search(next);
+		}
+	}
+
+	/**
+	 * 色が変わらなくなるまで色分けを繰り返す
+	 * 行は(色, 属するバンドの行の色, ヒントの(列の色, 数字の色)の組)、
+	 * 列は(色, 属するスタックの列の色, ヒントの(行の色, 数字の色)の組)、
+	 * 数字は(色, ヒントの(行の色, 列の色)の組)を並べた列で比較し、その順に新しい色を付ける。
+	 * 元の色を先頭に置くため、色分けは細かくなる一方で、元の色の順序は保たれる。
+	 * @param color : int[] : 色(書き換えられる)
+	 */
+	private void refine(int[] color) {
+		int classes = countClasses(color);
+		while(true) {
+			int[][] signatures = new int[3 * size][];
+			for(int i = 0; i < size; i++) {
+				signatures[i] = signature(color, 0, i);
+				signatures[size + i] = signature(color, 1, i);
+				signatures[2 * size + i] = signature(color, 2, i);
+			}
+			for(int g = 0; g < 3; g++) {
+				rank(signatures, g * size, color);
+			}
+			int next = countClasses(color);
+			if(next == classes) {
+				return;
+			}
+			classes = next;
+		}
+	}
+
+	/**
+	 * 行・列・数字の1つの要素の比較用の列を作る
+	 * @param color : int[] : 現在の色
+	 * @param group : int : 0は行、1は列、2は数字
+	 * @param index : int : 要素の番号[0, size)
+	 * @return int[] : 比較用の列
+	 */
+	private int[] signature(int[] color, int group, int index) {
+		int blockLength = group == 2 ? 0 : sizeSqrt;
+		int[] signature = new int[1 + blockLength + clueCounts[group * size + index]];
+		int length = 0;
+		signature[length++] = color[group * size + index];
+		if(group < 2) {
+			int start = (index / sizeSqrt) * sizeSqrt;
+			for(int i = 0; i < sizeSqrt; i++) {
+				signature[length++] = color[group * size + start + i];
+			}
+			Arrays.sort(signature, 1, length);
+		}
+		int pairs = length;
+		if(group == 2) {
+			for(int k = 0; k < clueCounts[2 * size + index]; k++) {
+				int cell = digitCells[index][k];
+				signature[length++] = color[cell / size] * size + color[size + cell % size];
+			}
+		}else {
+			for(int k = 0; k < size; k++) {
+				int row = group == 0 ? index : k;
+				int col = group == 0 ? k : index;
+				int value = grid[row * size + col];
+				if(value == SearchState.BLANK) {
+					continue;
+				}
+				int other = group == 0 ? color[size + col] : color[row];
+				signature[length++] = other * size + color[2 * size + value];
+			}
+		}
+		Arrays.sort(signature, pairs, length);
+		return signature;
+	}
+
+	/**
+	 * 比較用の列の辞書順に、種類ごとに0からの連番の色を付ける
+	 * @param signatures : int[][] : 要素ごとの比較用の列
+	 * @param offset : int : 種類の先頭の要素の位置
+	 * @param color : int[] : 色の書き込み先
+	 */
+	private void rank(int[][] signatures, int offset, int[] color) {
+		Integer[] order = new Integer[size];
+		for(int i = 0; i < size; i++) {
+			order[i] = offset + i;
+		}
+		Arrays.sort(order, (a, b) -> Arrays.compare(signatures[a], signatures[b]));
+		int rank = 0;
+		for(int i = 0; i < size; i++) {
+			if(i > 0 && Arrays.compare(signatures[order[i-1]], signatures[order[i]]) != 0) {
+				rank++;
+			}
+			color[order[i]] = rank;
+		}
+	}
+
+	/**
+	 * 行・列・数字の色の種類の数の合計を返す
+	 */
+	private int countClasses(int[] color) {
+		int classes = 0;
+		for(int g = 0; g < 3; g++) {
+			boolean[] used = new boolean[size];
+			for(int i = 0; i < size; i++) {
+				if(!used[color[g * size + i]]) {
+					used[color[g * size + i]] = true;
+					classes++;
+				}
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * 全ての行・列・数字が区別できた状態から盤面を作り、辞書順で最小なら記録する
+	 * バンドは含まれる行の最小の色の順、バンド内の行は色の順に並べる(列とスタックも同様)。
+	 * 数字は色の順に1から付け替える。
+	 * @param color : int[] : 全ての要素が異なる色
+	 */
+	private void leaf(int[] color) {
+		int[] rowOrder = order(color, 0);
+		int[] colOrder = order(color, size);
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++) {
+				int value = grid[rowOrder[i] * size + colOrder[j]];
+				candidate[i * size + j] = value == SearchState.BLANK ? 0 : color[2 * size + value] + 1;
+			}
+		}
+		if(!found || Arrays.compare(candidate, best) < 0) {
+			System.arraycopy(candidate, 0, best, 0, candidate.length);
+			found = true;
+		}
+	}
+
+	/**
+	 * 色から行(または列)の並び順を作る
+	 * @param color : int[] : 全ての要素が異なる色
+	 * @param offset : int : 行なら0、列ならsize
+	 * @return int[] : 並び順に並べた行(列)の番号
+	 */
+	private int[] order(int[] color, int offset) {
+		Integer[] blocks = new Integer[sizeSqrt];
+		int[] blockMin = new int[sizeSqrt];
+		for(int block = 0; block < sizeSqrt; block++) {
+			blocks[block] = block;
+			blockMin[block] = Integer.MAX_VALUE;
+			for(int i = 0; i < sizeSqrt; i++) {
+				blockMin[block] = Math.min(blockMin[block], color[offset + block * sizeSqrt + i]);
+			}
+		}
+		Arrays.sort(blocks, (a, b) -> Integer.compare(blockMin[a], blockMin[b]));
+		int[] order = new int[size];
+		int length = 0;
+		for(int block : blocks) {
+			Integer[] lines = new Integer[sizeSqrt];
+			for(int i = 0; i < sizeSqrt; i++) {
+				lines[i] = block * sizeSqrt + i;
+			}
+			Arrays.sort(lines, (a, b) -> Integer.compare(color[offset + a], color[offset + b]));
+			for(int line : lines) {
+				order[length++] = line;
+			}
+		}
+		return order;
+	}
+}
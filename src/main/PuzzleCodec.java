@@ -0,0 +1,188 @@
+package main;
+
+/**
+ * 問題と解答の盤面を詰めたバイナリ形式
+ * セルごとに値[0, SIZE](空欄は0)を表せる最小のビット数(9x9なら4ビット)で、
+ * 問題の全セルに続けて解答の全セルを行順に並べる。
+ * 9x9の問題と解答は81バイトになる。
+ */
+public final class PuzzleCodec {
+
+	private PuzzleCodec() {
+	}
+
+	/**
+	 * 1セルあたりのビット数を返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return int : ビット数
+	 */
+	public static int bitsPerCell(int size) {
+		return 32 - Integer.numberOfLeadingZeros(size);
+	}
+
+	/**
+	 * encodeBoardで詰めた1つの盤面の大きさを返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return int : 大きさ[byte]
+	 */
+	public static int boardBytes(int size) {
+		return (size * size * bitsPerCell(size) + 7) / 8;
+	}
+
+	/**
+	 * 問題と解答1組の大きさを返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return int : 大きさ[byte]
+	 */
+	public static int recordBytes(int size) {
+		return (2 * size * size * bitsPerCell(size) + 7) / 8;
+	}
+
+	/**
+	 * 問題と解答を詰めて書き出す
+	 * @param puzzle : Board : 問題の盤面
+	 * @param solution : Board : 解答の盤面(同じサイズ)
+	 * @return byte[] : 詰めたデータ(長さrecordBytes(size))
+	 */
+	public static byte[] encode(Board puzzle, Board solution) {
+		int size = puzzle.SIZE;
+		if(solution.SIZE != size) {
+			throw new IllegalArgumentException("盤面のサイズが一致しません");
+		}
+		byte[] data = new byte[recordBytes(size)];
+		int bits = bitsPerCell(size);
+		int position = 0;
+		for(Board board : new Board[] {puzzle, solution}) {
+			for(int row = 1; row <= size; row++) {
+				for(int col = 1; col <= size; col++) {
+					write(data, position, bits, board.getCell(row, col));
+					position += bits;
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * 1つの盤面のみを詰めて書き出す
+	 * 形式はencodeの問題部分と同じで、セル番号からcellAtで定数時間で値を読み出せる。
+	 * @param board : Board : 盤面
+	 * @return byte[] : 詰めたデータ(9x9なら41バイト)
+	 */
+	public static byte[] encodeBoard(Board board) {
+		int size = board.SIZE;
+		int bits = bitsPerCell(size);
+		byte[] data = new byte[boardBytes(size)];
+		int position = 0;
+		for(int row = 1; row <= size; row++) {
+			for(int col = 1; col <= size; col++) {
+				write(data, position, bits, board.getCell(row, col));
+				position += bits;
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * 詰めたデータから1セルの値を読み出す
+	 * 読み出すビット数は盤面サイズのみで決まるため、盤面全体を展開せずに定数時間で終わる。
+	 * @param data : byte[] : encodeBoardで詰めたデータ
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param cell : int : セル番号(行 * size + 列)
+	 * @return int : セルの値[0, size](空欄は0)
+	 */
+	public static int cellAt(byte[] data, int size, int cell) {
+		int bits = bitsPerCell(size);
+		return read(data, cell * bits, bits);
+	}
+
+	/**
+	 * encodeBoardで詰めたデータから盤面を読み込む
+	 * @param data : byte[] : 詰めたデータ
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return Board : 盤面(問題盤面として登録されていない)
+	 */
+	public static Board decodeBoard(byte[] data, int size) {
+		return decode(data, 0, size);
+	}
+
+	/**
+	 * 詰めたデータから問題の盤面を読み込む
+	 * 盤面は問題盤面として登録されていない状態で返す。
+	 * @param data : byte[] : 詰めたデータ
+	 * @param offset : int : データの先頭の位置
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return Board : 問題の盤面
+	 */
+	public static Board decodePuzzle(byte[] data, int offset, int size) {
+		return decode(data, offset * 8, size);
+	}
+
+	/**
+	 * 詰めたデータから解答の盤面を読み込む
+	 * @param data : byte[] : 詰めたデータ
+	 * @param offset : int : データの先頭の位置
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return Board : 解答の盤面
+	 */
+	public static Board decodeSolution(byte[] data, int offset, int size) {
+		return decode(data, offset * 8 + size * size * bitsPerCell(size), size);
+	}
+
+	/**
+	 * 指定のビット位置から盤面を読み込む
+	 * @param data : byte[] : 詰めたデータ
+	 * @param position : int : 盤面の先頭のビット位置
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return Board : 盤面
+	 */
+	private static Board decode(byte[] data, int position, int size) {
+		int bits = bitsPerCell(size);
+		Board board = new Board(size);
+		for(int row = 1; row <= size; row++) {
+			for(int col = 1; col <= size; col++) {
+				int value = read(data, position, bits);
+				position += bits;
+				if(value == 0) {
+					continue;
+				}
+				try {
+					board.setCell(row, col, value);
+				}catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * 値を上位ビットから順に書き込む
+	 * @param data : byte[] : 書き込み先
+	 * @param position : int : 書き込むビット位置
+	 * @param bits : int : ビット数
+	 * @param value : int : 書き込む値
+	 */
+	private static void write(byte[] data, int position, int bits, int value) {
+		for(int i = bits - 1; i >= 0; i--, position++) {
+			if(((value >>> i) & 1) != 0) {
+				data[position >>> 3] |= (byte)(0x80 >>> (position & 7));
+			}
+		}
+	}
+
+	/**
+	 * 値を上位ビットから順に読み込む
+	 * @param data : byte[] : 読み込み元
+	 * @param position : int : 読み込むビット位置
+	 * @param bits : int : ビット数
+	 * @return int : 読み込んだ値
+	 */
+	private static int read(byte[] data, int position, int bits) {
+		int value = 0;
+		for(int i = 0; i < bits; i++, position++) {
+			value = (value << 1) | ((data[position >>> 3] >>> (7 - (position & 7))) & 1);
+		}
+		return value;
+	}
+}
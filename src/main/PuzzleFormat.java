@@ -0,0 +1,130 @@
+package main;
+
+/**
+ * 1行1問のテキスト形式と盤面の変換
+ * 盤面を左上から行順に1セル1文字で並べる(9x9なら81文字)。
+ * 空欄は '.' か '0'、数字は1～9、10以上はA, B, ...で表す。
+ */
+public final class PuzzleFormat {
+	public static final char BLANK = '.'; //書き出すときの空欄の文字
+	public static final int INVALID = -1; //数字として解釈できない文字
+
+	private PuzzleFormat() {
+	}
+
+	/**
+	 * 1行の長さから盤面サイズを求める
+	 * @param length : int : 行の長さ(セルの数)
+	 * @return int : 盤面の一辺の長さ(対応するサイズがない場合は0)
+	 */
+	public static int sizeOf(int length) {
+		int size = (int)Math.round(Math.sqrt((double)length));
+		int sizeSqrt = (int)Math.round(Math.sqrt((double)size));
+		if(size * size != length || sizeSqrt * sizeSqrt != size || size < 4 || size > 25) {
+			return 0;
+		}
+		return size;
+	}
+
+	/**
+	 * 文字をセルの値に変換する
+	 * @param ch : int : 文字
+	 * @param size : int : 盤面の一辺の長さ
+	 * @return int : セルの値[1, size]、空欄は0(変換できない場合はINVALID)
+	 */
+	public static int valueOf(int ch, int size) {
+		int value;
+		if(ch == '.' || ch == '0') {
+			return 0;
+		}else if(ch >= '1' && ch <= '9') {
+			value = ch - '0';
+		}else if(ch >= 'A' && ch <= 'Z') {
+			value = ch - 'A' + 10;
+		}else if(ch >= 'a' && ch <= 'z') {
+			value = ch - 'a' + 10;
+		}else {
+			return INVALID;
+		}
+		return value <= size ? value : INVALID;
+	}
+
+	/**
+	 * セルの値を文字に変換する
+	 * @param value : int : セルの値[1, 35]、空欄は0
+	 * @return char : 文字
+	 */
+	public static char symbolOf(int value) {
+		if(value == 0) {
+			return BLANK;
+		}
+		return value <= 9 ? (char)('0' + value) : (char)('A' + value - 10);
+	}
+
+	/**
+	 * 1行のテキストを盤面に変換する
+	 * 行末の空白やカンマ以降(解答などの付加情報)は読み飛ばす。
+	 * 盤面は問題盤面として登録されていない状態で返す。
+	 * @param line : CharSequence : 1問分の行
+	 * @return Board : 変換した盤面
+	 * @throws IllegalArgumentException : 盤面として解釈できない行が与えられたときのエラー
+	 */
+	public static Board parse(CharSequence line) {
+		int length = 0;
+		while(length < line.length() && !isSeparator(line.charAt(length))) {
+			length++;
+		}
+		int size = sizeOf(length);
+		if(size == 0) {
+			throw new IllegalArgumentException("盤面の長さが不正です: " + length);
+		}
+		Board board = new Board(size);
+		for(int i = 0; i < length; i++) {
+			int value = valueOf(line.charAt(i), size);
+			if(value == INVALID) {
+				throw new IllegalArgumentException("盤面に使えない文字です: " + line.charAt(i));
+			}
+			if(value == 0) {
+				continue;
+			}
+			try {
+				board.setCell(i / size + 1, i % size + 1, value);
+			}catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * 盤面を1行のテキストに変換する
+	 * @param board : Board : 変換する盤面
+	 * @return String : 1問分の行(改行は含まない)
+	 */
+	public static String format(Board board) {
+		StringBuilder builder = new StringBuilder(board.SIZE * board.SIZE);
+		append(builder, board);
+		return builder.toString();
+	}
+
+	/**
+	 * 盤面を1行のテキストとして追記する
+	 * @param builder : StringBuilder : 追記先
+	 * @param board : Board : 変換する盤面
+	 */
+	public static void append(StringBuilder builder, Board board) {
+		for(int row = 1; row <= board.SIZE; row++) {
+			for(int col = 1; col <= board.SIZE; col++) {
+				builder.append(symbolOf(board.getCell(row, col)));
+			}
+		}
+	}
+
+	/**
+	 * 盤面の終わりを表す文字か判定する
+	 * @param ch : int : 文字
+	 * @return boolean : 空白・カンマならtrue
+	 */
+	static boolean isSeparator(int ch) {
+		return ch == ' ' || ch == '\t' || ch == ',' || ch == ';' || ch == '\r' || ch == '\n';
+	}
+}
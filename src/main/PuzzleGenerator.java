@@ -0,0 +1,536 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 解がユニークな問題盤面の生成器
+ * 1問ずつの生成に加え、スレッドプールで多数の問題をまとめて生成するAPIを提供する。
+ * 乱数はシード値から作るSplittableRandomのみを利用するため、同じシード値からは常に同じ問題が生成される。
+ * インスタンスはソルバの作業領域と乱数を持つため、スレッド間で共有しないこと。
+ * 1問ごとにユニーク性の判定回数・探索の統計・工程ごとの経過時間を記録し、JFRのGenerateEventとしても記録する。
+ */
+public class PuzzleGenerator {
+	private static final double BLANKRATE = 0.60; //問題盤面の空欄の割合の目標
+	private static final double HUGEBLANKRATE = 0.50; //25x25以上の問題盤面の空欄の割合の目標
+	private static final long SEEDGAMMA = 0x9E3779B97F4A7C15L; //問題番号からシード値を作るときの間隔
+	private static final int LARGESIZE = 16; //ユニーク性の判定に探索ノード数の上限を設ける盤面サイズの下限
+	private static final long CHECKNODES = 20000; //16x16以上での1回のユニーク性の判定の探索ノード数の上限
+	private static final int MAXABORTS = 8; //判定の打ち切りがこの回数続いたらヒントの取り除きを終える
+
+	private final int size; //盤面の一辺の長さ
+	private final Solver solver; //解のユニーク性の判定に利用するソルバ
+	private final SplittableRandom random; //問題ごとのシード値を作る乱数
+	private final Stats stats = new Stats(); //生成した全ての問題の統計
+	private Stats lastStats = new Stats(); //直前に生成した問題の統計
+
+	/**
+	 * コンストラクタ
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 */
+	public PuzzleGenerator(int size) {
+		this(size, new BitSolver());
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param solver : Solver : 解のユニーク性の判定に利用するソルバ
+	 */
+	public PuzzleGenerator(int size, Solver solver) {
+		this(size, solver, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param solver : Solver : 解のユニーク性の判定に利用するソルバ
+	 * @param seed : long : 問題ごとのシード値を作る乱数のシード値
+	 */
+	public PuzzleGenerator(int size, Solver solver, long seed) {
+		//sizeが平方数かの判定
+		int sizeSqrt = (int)Math.sqrt((double)size);
+		if(size != sizeSqrt * sizeSqrt) {
+			System.err.println("引数が平方数ではありません");
+		}
+		this.size = size;
+		this.solver = solver;
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * シード値から問題盤面を再生成する
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param seed : long : 問題のシード値
+	 * @return Board : 作成された盤面
+	 */
+	public static Board regenerate(int size, long seed) {
+		return new PuzzleGenerator(size).generate(seed);
+	}
+
+	/**
+	 * 白紙から回答を作成する。
+	 * （作成される回答集合は解の全体集合以下である）
+	 * @param size : int : 盤面のサイズ(平方数である必要がある)
+	 * @param random : SplittableRandom : 利用する乱数
+	 * @return　Board : 数独が完成している盤面
+	 */
+	static Board genAnswerBoard(int size, SplittableRandom random) {
+		//sizeが平方数かの判定
+		int sizeSqrt = (int)Math.sqrt((double)size);
+		if(size != sizeSqrt * sizeSqrt) {
+			System.err.println("引数が平方数ではありません");
+			return null;
+		}
+		
+		Board board = new Board(size);
+		
+		int[] numLine = new int[size];
+		int[] startOffset = new int[sizeSqrt];
+		int[][] sectionOffset = new int[sizeSqrt][sizeSqrt];
+		for(int i = 0; i < sizeSqrt; i++) {
+			startOffset[i] = i;
+			for(int j = 0; j < sizeSqrt; j++) {
+				sectionOffset[i][j] = j;
+				numLine[(i*sizeSqrt)+j] = (i*sizeSqrt)+j + 1;
+			}
+		}
+		
+		//数字列と基準点をランダムにする
+		Sudoku.shuffle(numLine, random);
+		Sudoku.shuffle(startOffset, random);
+		for(int i = 0; i < sizeSqrt; i++) {
+			Sudoku.shuffle(sectionOffset[i], random);
+		}
+		
+		for(int row = 0; row < size; row++) {
+			
+			for(int colGridOut = 0; colGridOut < sizeSqrt; colGridOut++) {
+				for(int colGridIn = 0; colGridIn < sizeSqrt; colGridIn++) {
+
+					int r = (row) % size;
+					int c = (((colGridOut) * sizeSqrt ) + (colGridIn)) % size;
+					int n = numLine[(((colGridOut + sectionOffset[(int)row/sizeSqrt][row%sizeSqrt]) * sizeSqrt )
+							+ (colGridIn + startOffset[(int)row/sizeSqrt])) % size];
+					try {
+						board.setCell(r+1, c+1, n);
+					}catch(Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		
+		return board;
+	}
+	
+	/**
+	 * 解がユニークな盤面を作成して返す関数。
+	 * 回答となる盤面をgenAnswerBoardで作成してそこから解がユニークを維持してヒントを減らして生成する。
+	 * 問題のシード値は生成器の乱数から作る。
+	 * @return Board : 作成された盤面
+	 */
+	public Board generate() {
+		return generate(random.nextLong());
+	}
+
+	/**
+	 * 解がユニークな問題を作成し、シード値と組にして返す
+	 * @return Puzzle : 作成された問題(解答付き)
+	 */
+	public Puzzle generatePuzzle() {
+		return generatePuzzle(random.nextLong());
+	}
+
+	/**
+	 * シード値から解がユニークな問題を作成し、ヒントを取り除く前の解答と組にして返す
+	 * 解答は詰めた形で保持するため、解答を捨てるgenerateとほとんど変わらない費用で作成できる。
+	 * @param seed : long : 問題のシード値
+	 * @return Puzzle : 作成された問題(解答付き)
+	 */
+	public Puzzle generatePuzzle(long seed) {
+		double rate = size >= 25 ? HUGEBLANKRATE : BLANKRATE;
+		return generatePuzzle(seed, (int)Math.ceil(size * size * rate));
+	}
+
+	/**
+	 * シード値から解がユニークな盤面を作成して返す関数。
+	 * 空欄の数はBLANKRATEの割合を目標とする。
+	 * 25x25以上では空欄がこの割合に近づくとユニーク性の判定が急に重くなるため、HUGEBLANKRATEの割合を目標とする。
+	 * @param seed : long : 問題のシード値
+	 * @return Board : 作成された盤面
+	 */
+	public Board generate(long seed) {
+		return generatePuzzle(seed).board;
+	}
+
+	/**
+	 * シード値から解がユニークな盤面を作成して返す関数。
+	 * 回答となる盤面をgenAnswerBoardで作成してそこから解がユニークを維持してヒントを減らして生成する。
+	 * @param seed : long : 問題のシード値
+	 * @param targetBlanks : int : 目標とする空欄の数
+	 * @return Board : 作成された盤面
+	 */
+	public Board generate(long seed, int targetBlanks) {
+		return generatePuzzle(seed, targetBlanks).board;
+	}
+
+	/**
+	 * シード値から解がユニークな問題を作成し、解答と組にして返す
+	 * @param seed : long : 問題のシード値
+	 * @param targetBlanks : int : 目標とする空欄の数
+	 * @return Puzzle : 作成された問題(解答付き)
+	 */
+	public Puzzle generatePuzzle(long seed, int targetBlanks) {
+		GenerateEvent event = new GenerateEvent();
+		event.begin();
+		Stats puzzle = new Stats();
+		//ソルバの統計は呼び出し元のものなので消さず、この問題の探索の前後の差を記録する
+		SearchStats before = copyStats();
+
+		long start = System.nanoTime();
+		SplittableRandom random = new SplittableRandom(seed);
+		Board answer = genAnswerBoard(size, random);
+		long answered = System.nanoTime();
+		Board board = dig(answer, targetBlanks, random, puzzle);
+		long dug = System.nanoTime();
+
+		puzzle.puzzles = 1;
+		puzzle.answerNanos = answered - start;
+		puzzle.digNanos = dug - answered;
+		puzzle.search.addSince(copyStats(), before);
+		lastStats = puzzle;
+		stats.add(puzzle);
+
+		event.end();
+		if(event.shouldCommit()) {
+			event.size = size;
+			event.seed = seed;
+			event.targetBlanks = targetBlanks;
+			event.blanks = board.countBlanks();
+			event.uniquenessChecks = puzzle.uniquenessChecks;
+			event.rejectedRemovals = puzzle.rejectedRemovals;
+			event.nodes = puzzle.search.nodes;
+			event.backtracks = puzzle.search.backtracks;
+			event.answerTime = puzzle.answerNanos;
+			event.digTime = puzzle.digNanos;
+			event.commit();
+		}
+		return new Puzzle(seed, board, PuzzleCodec.encodeBoard(answer));
+	}
+
+	/**
+	 * ソルバの統計のコピーを返す
+	 * ParallelSolverは統計をロックを取って更新するため、同じロックを取ってコピーする。
+	 */
+	private SearchStats copyStats() {
+		SearchStats stats = solver.getStats();
+		synchronized(stats) {
+			return stats.copy();
+		}
+	}
+
+	/**
+	 * 生成した全ての問題の統計を返す
+	 * @return Stats : 統計(生成のたびに更新される)
+	 */
+	public Stats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 直前に生成した問題の統計を返す
+	 * @return Stats : 統計
+	 */
+	public Stats getLastStats() {
+		return lastStats;
+	}
+
+	/**
+	 * 盤面から解のユニーク性を保ったままヒントを取り除く。
+	 * 埋まっているセルをランダムな順に1度ずつ試し、空欄にすると解がユニークでなくなるセルは元に戻して次へ進む。
+	 * 空欄の数がtargetBlanksに達するか全てのセルを試したら終了するため、
+	 * ユニーク性の判定は最大でもセルの数の回数で済む。
+	 * 全てのセルを試しても目標に達しない場合は、それ以上ヒントを減らせない盤面を返す。
+	 * 16x16以上では1回の判定の探索ノード数をCHECKNODESまでとし、判定が終わらないセルは取り除かない。
+	 * 打ち切りがMAXABORTS回続いた場合は、残りのセルも判定が終わらない見込みが高いため、その時点の盤面を返す。
+	 * ユニーク性は保たれるが、同じシード値から同じ問題を再生成するには同じ種類のソルバを使う必要がある。
+	 * @param answer : Board : 解がユニークな盤面(変更されない)
+	 * @param targetBlanks : int : 目標とする空欄の数
+	 * @param random : SplittableRandom : セルを試す順番を決める乱数
+	 * @return Board : 作成された盤面
+	 */
+	public Board dig(Board answer, int targetBlanks, SplittableRandom random) {
+		return dig(answer, targetBlanks, random, new Stats());
+	}
+
+	/**
+	 * 盤面から解のユニーク性を保ったままヒントを取り除き、判定の回数を記録する
+	 * @param answer : Board : 解がユニークな盤面(変更されない)
+	 * @param targetBlanks : int : 目標とする空欄の数
+	 * @param random : SplittableRandom : セルを試す順番を決める乱数
+	 * @param stats : Stats : 判定の回数の記録先
+	 * @return Board : 作成された盤面
+	 */
+	private Board dig(Board answer, int targetBlanks, SplittableRandom random, Stats stats) {
+		//問題盤面として登録されたセルのない盤面にコピーする
+		Board board = new Board(answer.SIZE);
+		board.importState(answer.exportState());
+
+		int[] order = new int[size * size];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Sudoku.shuffle(order, random);
+		long maxNodes = size >= LARGESIZE ? CHECKNODES : Long.MAX_VALUE;
+		int aborts = 0; //連続して打ち切った判定の回数
+
+		for(int cell : order) {
+			if(board.countBlanks() >= targetBlanks) {
+				break;
+			}
+			int row = cell / size + 1;
+			int col = cell % size + 1;
+			if(board.isBlank(row, col)) {
+				continue;
+			}
+			int value = board.getCell(row, col);
+			board.resetCell(row, col);
+			stats.uniquenessChecks++;
+			int count = solver.countSolutions(board, 2, maxNodes);
+			if(count != 1) {
+				stats.rejectedRemovals++;
+				try {
+					board.setCell(row, col, value);
+				}catch(Exception e) {
+					e.printStackTrace();
+				}
+				if(count == Solver.UNKNOWN) {
+					stats.abortedChecks++;
+					if(++aborts >= MAXABORTS) {
+						break;
+					}
+					continue;
+				}
+			}
+			aborts = 0;
+		}
+		return board;
+	}
+
+	/**
+	 * 解がユニークな問題を複数のスレッドでまとめて生成する。
+	 * シード値はランダムに決める。
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param count : int : 生成する問題数
+	 * @param threads : int : 生成に利用するスレッド数
+	 * @param backend : Solver.Backend : 解のユニーク性の判定に利用するソルバの種類
+	 * @param sink : Consumer<Puzzle> : 生成された問題の受け取り先
+	 * @return Report : 生成数・経過時間・スループット
+	 * @throws InterruptedException : 生成の完了待ちで割り込まれたときのエラー
+	 */
+	public static Report generateBatch(int size, int count, int threads, Solver.Backend backend, Consumer<Puzzle> sink) throws InterruptedException {
+		return generateBatch(size, count, threads, backend, new SplittableRandom().nextLong(), sink);
+	}
+
+	/**
+	 * 解がユニークな問題を複数のスレッドでまとめて生成する。
+	 * i番目の問題はseedとiのみから決まるシード値で生成されるため、
+	 * スレッド数や実行順に関わらず同じseedからは同じ問題の集合が生成される。
+	 * 生成された問題は完成した順にsinkへ渡され、生成器側では保持しない。
+	 * sinkの呼び出しは同期されるため、sink自体はスレッドセーフでなくてよい。
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param count : int : 生成する問題数
+	 * @param threads : int : 生成に利用するスレッド数
+	 * @param backend : Solver.Backend : 解のユニーク性の判定に利用するソルバの種類
+	 * @param seed : long : 問題ごとのシード値の元になるシード値
+	 * @param sink : Consumer<Puzzle> : 生成された問題の受け取り先
+	 * @return Report : 生成数・経過時間・スループット
+	 * @throws InterruptedException : 生成の完了待ちで割り込まれたときのエラー
+	 */
+	public static Report generateBatch(int size, int count, int threads, Solver.Backend backend, long seed, Consumer<Puzzle> sink) throws InterruptedException {
+		int workers = Math.max(1, Math.min(threads, count));
+		AtomicInteger nextIndex = new AtomicInteger();
+		AtomicInteger generated = new AtomicInteger();
+		Object lock = new Object();
+		Stats stats = new Stats();
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int i = 0; i < workers; i++) {
+				futures.add(executor.submit(() -> {
+					//ソルバはスレッドごとに持つ
+					PuzzleGenerator generator = new PuzzleGenerator(size, backend.create());
+					for(int index = nextIndex.getAndIncrement(); index < count; index = nextIndex.getAndIncrement()) {
+						long puzzleSeed = puzzleSeed(seed, index);
+						Puzzle puzzle = generator.generatePuzzle(puzzleSeed);
+						synchronized(lock) {
+							sink.accept(puzzle);
+						}
+						generated.incrementAndGet();
+					}
+					synchronized(stats) {
+						stats.add(generator.getStats());
+					}
+				}));
+			}
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				}catch(ExecutionException e) {
+					throw new IllegalStateException("問題の生成に失敗しました", e.getCause());
+				}
+			}
+		}finally {
+			executor.shutdownNow();
+		}
+		return new Report(generated.get(), System.nanoTime() - start, stats);
+	}
+
+	/**
+	 * まとめて生成するときのi番目の問題のシード値を返す
+	 * @param seed : long : 元になるシード値
+	 * @param index : long : 問題の番号
+	 * @return long : 問題のシード値
+	 */
+	static long puzzleSeed(long seed, long index) {
+		return new SplittableRandom(seed + index * SEEDGAMMA).nextLong();
+	}
+
+	/**
+	 * まとめて生成したときの結果
+	 */
+	public static class Report {
+		public final int count; //生成した問題数
+		public final long elapsedNanos; //経過時間[ns]
+		public final Stats stats; //全てのスレッドの生成の統計
+
+		/**
+		 * コンストラクタ
+		 * @param count : int : 生成した問題数
+		 * @param elapsedNanos : long : 経過時間[ns]
+		 * @param stats : Stats : 全てのスレッドの生成の統計
+		 */
+		Report(int count, long elapsedNanos, Stats stats) {
+			this.count = count;
+			this.elapsedNanos = elapsedNanos;
+			this.stats = stats;
+		}
+
+		/**
+		 * スループットを返す
+		 * @return double : 1秒あたりの生成数
+		 */
+		public double puzzlesPerSecond() {
+			return elapsedNanos == 0 ? 0 : count / (elapsedNanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d puzzles in %.3f s (%.1f puzzles/s)", count, elapsedNanos / 1e9, puzzlesPerSecond());
+		}
+	}
+
+	/**
+	 * 問題生成の統計
+	 * 1問ごとの値と、それを合計した値の両方に利用する。
+	 * ヒントの取り除きは1回の走査で終わる(やり直しがない)ため、
+	 * 取り除けずに戻したセルの数(rejectedRemovals)が生成に手間取った度合いを表す。
+	 */
+	public static class Stats {
+		long puzzles; //問題数
+		long uniquenessChecks; //解のユニーク性の判定回数
+		long rejectedRemovals; //解がユニークでなくなるため取り除けなかったヒントの数
+		long abortedChecks; //探索ノード数の上限で打ち切ったユニーク性の判定の回数(rejectedRemovalsに含む)
+		long answerNanos; //解答の盤面の作成にかかった時間[ns]
+		long digNanos; //ヒントの取り除きにかかった時間[ns]
+		final SearchStats search = new SearchStats(); //ユニーク性の判定の探索の統計
+
+		/**
+		 * 他の統計の値を加える
+		 * @param other : Stats : 加える統計
+		 */
+		public void add(Stats other) {
+			puzzles += other.puzzles;
+			uniquenessChecks += other.uniquenessChecks;
+			rejectedRemovals += other.rejectedRemovals;
+			abortedChecks += other.abortedChecks;
+			answerNanos += other.answerNanos;
+			digNanos += other.digNanos;
+			search.add(other.search);
+		}
+
+		/**
+		 * 問題数を返す
+		 * @return long : 問題数
+		 */
+		public long getPuzzles() {
+			return puzzles;
+		}
+
+		/**
+		 * 解のユニーク性の判定回数を返す
+		 * @return long : 判定回数
+		 */
+		public long getUniquenessChecks() {
+			return uniquenessChecks;
+		}
+
+		/**
+		 * 取り除けなかったヒントの数を返す
+		 * @return long : ヒントの数
+		 */
+		public long getRejectedRemovals() {
+			return rejectedRemovals;
+		}
+
+		/**
+		 * 探索ノード数の上限で打ち切ったユニーク性の判定の回数を返す
+		 * @return long : 判定回数
+		 */
+		public long getAbortedChecks() {
+			return abortedChecks;
+		}
+
+		/**
+		 * 解答の盤面の作成にかかった時間を返す
+		 * @return long : 経過時間[ns]
+		 */
+		public long getAnswerNanos() {
+			return answerNanos;
+		}
+
+		/**
+		 * ヒントの取り除きにかかった時間を返す
+		 * @return long : 経過時間[ns]
+		 */
+		public long getDigNanos() {
+			return digNanos;
+		}
+
+		/**
+		 * ユニーク性の判定の探索の統計を返す
+		 * @return SearchStats : 探索の統計
+		 */
+		public SearchStats getSearch() {
+			return search;
+		}
+
+		@Override
+		public String toString() {
+			double n = Math.max(1, puzzles);
+			return String.format("%d puzzles, per puzzle: checks %.1f, rejected %.1f, aborted %.1f, nodes %.1f, backtracks %.1f, answer %.3f ms, dig %.3f ms, max depth %d",
+					puzzles, uniquenessChecks / n, rejectedRemovals / n, abortedChecks / n, search.nodes / n, search.backtracks / n,
+					answerNanos / n / 1e6, digNanos / n / 1e6, search.maxDepth);
+		}
+	}
+}
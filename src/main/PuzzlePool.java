@@ -0,0 +1,468 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * 生成済みの問題のプール
+ * 盤面サイズと難易度ごとに問題を蓄え、ゲームの開始時に生成を待たずに問題を渡す。
+ * サイズと難易度ごとの問題数が下限(lowWater)を下回るとバックグラウンドのスレッドが上限(capacity)まで補充する。
+ * 生成する問題の難易度は選べないため、補充はサイズごとに生成して評価した難易度の列に加える。
+ * 続けてMAXATTEMPTS回生成しても現れなかった難易度は、再び現れるまで補充しない。
+ * 問題はPuzzleGeneratorで生成してLogicSolverで難易度を評価するため、シード値から同じ問題を再生成できる。
+ * ファイルを指定した場合は、開いたときに読み込み、閉じたときに残っている問題を書き出す。
+ * インスタンスは複数スレッドから利用できる。
+ */
+public class PuzzlePool implements Closeable {
+	public static final int DEFAULTCAPACITY = 8; //サイズと難易度ごとに蓄える問題数の標準値
+	public static final int DEFAULTLOWWATER = 2; //難易度ごとに補充を始める問題数の標準値
+	public static final String FILEPROPERTY = "sudoku.pool"; //共有のプールを保存するファイルを指定するシステムプロパティ
+	public static final int MAXATTEMPTS = 1000; //蓄えのない難易度の問題を探して生成する回数の上限
+
+	private static PuzzlePool shared; //Sudokuが利用する共有のプール
+
+	private final int capacity; //サイズと難易度ごとに蓄える問題数
+	private final int lowWater; //難易度ごとに補充を始める問題数
+	private final Solver.Backend backend; //生成に利用するソルバの種類
+	private final Path file; //保存先のファイル(保存しない場合はnull)
+	private final Map<Integer, Shelf> shelves = new TreeMap<>(); //サイズごとの問題
+	private final Thread worker; //補充を行うスレッド
+	private boolean closed; //閉じられたらtrue
+
+	/**
+	 * コンストラクタ
+	 * 保存はせず、標準の問題数で蓄える。
+	 * @param backend : Solver.Backend : 生成に利用するソルバの種類
+	 * @param sizes : int... : 起動時から蓄える盤面サイズ
+	 */
+	public PuzzlePool(Solver.Backend backend, int... sizes) {
+		this(null, DEFAULTCAPACITY, DEFAULTLOWWATER, backend, sizes);
+	}
+
+	/**
+	 * コンストラクタ
+	 * ファイルがあれば問題を読み込み、補充を開始する。
+	 * @param file : Path : 保存先のファイル(保存しない場合はnull)
+	 * @param capacity : int : サイズと難易度ごとに蓄える問題数
+	 * @param lowWater : int : 難易度ごとに補充を始める問題数(この数を下回ると補充する)
+	 * @param backend : Solver.Backend : 生成に利用するソルバの種類
+	 * @param sizes : int... : 起動時から蓄える盤面サイズ
+	 */
+	public PuzzlePool(Path file, int capacity, int lowWater, Solver.Backend backend, int... sizes) {
+		if(capacity <= 0 || lowWater < 0 || lowWater > capacity) {
+			throw new IllegalArgumentException("問題数の指定が不正です");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.lowWater = lowWater;
+		this.backend = backend;
+		for(int size : sizes) {
+			shelf(size);
+		}
+		if(file != null) {
+			load();
+		}
+		worker = new Thread(this::refill, "puzzle-pool");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Sudokuが利用する共有のプールを返す
+	 * 初めて呼ばれたときにMainで選べる全てのサイズ(4, 9, 16, 25)を蓄えるプールを作成する。
+	 * システムプロパティsudoku.poolにファイルが指定されていれば、そのファイルに保存する。
+	 * @return PuzzlePool : 共有のプール
+	 */
+	public static synchronized PuzzlePool shared() {
+		if(shared == null) {
+			String name = System.getProperty(FILEPROPERTY);
+			PuzzlePool pool = new PuzzlePool(name == null ? null : Paths.get(name),
+					DEFAULTCAPACITY, DEFAULTLOWWATER, Solver.Backend.BITMASK, 4, 9, 16, 25);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					pool.close();
+				}catch(IOException e) {
+					System.err.println("問題のプールを保存できませんでした: " + e.getMessage());
+				}
+			}));
+			shared = pool;
+		}
+		return shared;
+	}
+
+	/**
+	 * 問題を1つ取り出す
+	 * 難易度を問わず、最も多く蓄えられている難易度から取り出す。
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @return Puzzle : 問題(シード値と登録前の盤面)
+	 */
+	public Puzzle take(int size) {
+		return take(size, null);
+	}
+
+	/**
+	 * 指定の難易度の問題を1つ取り出す
+	 * 蓄えがない場合は呼び出したスレッドで、最大MAXATTEMPTS回まで生成する。
+	 * そのとき難易度の合わない問題は、空きがあればプールに加える。
+	 * 盤面サイズによっては現れない難易度がある(4x4はほぼ全てEASYになる)ため、回数に上限を設けている。
+	 * 蓄えていないサイズが指定された場合は、以降そのサイズも蓄える。
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param difficulty : Difficulty : 難易度(nullの場合は全ての難易度)
+	 * @return Puzzle : 問題(シード値と登録前の盤面)。上限の回数生成しても難易度が合わなければnull
+	 */
+	public Puzzle take(int size, Difficulty difficulty) {
+		Shelf shelf;
+		synchronized(this) {
+			shelf = shelf(size);
+			Puzzle puzzle = shelf.poll(difficulty);
+			notifyAll();
+			if(puzzle != null) {
+				return puzzle;
+			}
+		}
+		//蓄えがなければ待たずに生成する
+		for(int attempt = 0; attempt < MAXATTEMPTS; attempt++) {
+			Generated generated = shelf.generateOne();
+			synchronized(this) {
+				shelf.record(generated.difficulty);
+				if(difficulty == null || generated.difficulty == difficulty) {
+					return generated.puzzle;
+				}
+				shelf.offer(generated);
+				notifyAll();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 蓄えられている問題数を返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param difficulty : Difficulty : 難易度(nullの場合は全ての難易度)
+	 * @return int : 問題数
+	 */
+	public synchronized int count(int size, Difficulty difficulty) {
+		Shelf shelf = shelves.get(size);
+		if(shelf == null) {
+			return 0;
+		}
+		if(difficulty != null) {
+			return shelf.queues.get(difficulty.ordinal()).size();
+		}
+		int count = 0;
+		for(ArrayDeque<Puzzle> queue : shelf.queues) {
+			count += queue.size();
+		}
+		return count;
+	}
+
+	/**
+	 * 全てのサイズと難易度が上限まで蓄えられるまで待つ
+	 * 現れないため補充をやめた難易度は待たない。
+	 * @param timeoutMillis : long : 待つ時間の上限[ms]
+	 * @return boolean : 補充が必要な難易度がなくなればtrue
+	 * @throws InterruptedException : 待機中に割り込まれたときのエラー
+	 */
+	public synchronized boolean awaitFull(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while(!closed && nextShelf() != null) {
+			long rest = deadline - System.currentTimeMillis();
+			if(rest <= 0) {
+				return false;
+			}
+			wait(rest);
+		}
+		return !closed;
+	}
+
+	/**
+	 * 補充を止め、ファイルが指定されていれば残っている問題を書き出す
+	 * 2回目以降の呼び出しは何もしない。
+	 * @throws IOException : 書き出しに失敗したときのエラー
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		if(Thread.currentThread() != worker) {
+			try {
+				worker.join();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(file != null) {
+			save();
+		}
+	}
+
+	/**
+	 * 補充のスレッドの処理
+	 * 下限を下回った難易度のあるサイズを1問ずつ生成し、補充が必要なサイズがなければ待機する。
+	 */
+	private void refill() {
+		while(true) {
+			Shelf shelf;
+			synchronized(this) {
+				while((shelf = nextShelf()) == null && !closed) {
+					try {
+						wait();
+					}catch(InterruptedException e) {
+						return;
+					}
+				}
+				if(closed) {
+					return;
+				}
+			}
+			Generated generated = shelf.generateOne();
+			synchronized(this) {
+				shelf.record(generated.difficulty);
+				shelf.offer(generated);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 補充が必要なサイズを返す
+	 * 補充が必要な難易度のうち、最も蓄えの少ないものを持つサイズを選ぶ。
+	 * 蓄えが同じ数なら、最近現れた(生成して見つかりやすい)難易度を優先する。
+	 */
+	private Shelf nextShelf() {
+		Shelf next = null;
+		int nextCount = 0;
+		int nextMisses = 0;
+		for(Shelf shelf : shelves.values()) {
+			for(Difficulty difficulty : Difficulty.values()) {
+				int i = difficulty.ordinal();
+				if(!shelf.needsRefill(i)) {
+					continue;
+				}
+				int count = shelf.queues.get(i).size();
+				if(next == null || count < nextCount || (count == nextCount && shelf.misses[i] < nextMisses)) {
+					next = shelf;
+					nextCount = count;
+					nextMisses = shelf.misses[i];
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * サイズに対応する問題の棚を返す(なければ作成する)
+	 */
+	private synchronized Shelf shelf(int size) {
+		Shelf shelf = shelves.get(size);
+		if(shelf == null) {
+			if(PuzzleFormat.sizeOf(size * size) == 0) {
+				throw new IllegalArgumentException("盤面のサイズが不正です: " + size);
+			}
+			shelf = new Shelf(size);
+			shelves.put(size, shelf);
+			notifyAll();
+		}
+		return shelf;
+	}
+
+	/**
+	 * ファイルから問題を読み込む
+	 * 1行に「難易度 シード値 問題 [解答]」を空白区切りで持つ。不正な行は読み飛ばす。
+	 * 解答のない行(以前の形式)の問題は、ここで解を求めて解答付きで蓄える。解のない問題は不正な行として読み飛ばす。
+	 */
+	private void load() {
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			BitSolver solver = new BitSolver(); //解答のない行の解を求めるソルバ
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if(fields.length != 3 && fields.length != 4) {
+					continue;
+				}
+				try {
+					Difficulty difficulty = Difficulty.valueOf(fields[0]);
+					long seed = Long.parseLong(fields[1]);
+					Board board = PuzzleFormat.parse(fields[2]);
+					byte[] solution;
+					if(fields.length == 4) {
+						solution = PuzzleCodec.encodeBoard(PuzzleFormat.parse(fields[3]));
+					}else {
+						Board answer = solver.solve(board);
+						if(answer == null) {
+							continue;
+						}
+						solution = PuzzleCodec.encodeBoard(answer);
+					}
+					synchronized(this) {
+						shelf(board.SIZE).offer(new Generated(new Puzzle(seed, board, solution), difficulty));
+					}
+				}catch(IllegalArgumentException e) {
+					continue;
+				}
+			}
+		}catch(NoSuchFileException e) {
+			return;
+		}catch(IOException e) {
+			System.err.println("問題のプールを読み込めませんでした: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 残っている問題をファイルに書き出す
+	 * 一時ファイルに書いてから置き換えるため、途中で終了しても元のファイルは壊れない。
+	 */
+	private void save() throws IOException {
+		Path temp = Paths.get(file + ".tmp");
+		try(BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			synchronized(this) {
+				for(Shelf shelf : shelves.values()) {
+					for(Difficulty difficulty : Difficulty.values()) {
+						for(Puzzle puzzle : shelf.queues.get(difficulty.ordinal())) {
+							writer.write(difficulty.name());
+							writer.write(' ');
+							writer.write(Long.toString(puzzle.seed));
+							writer.write(' ');
+							writer.write(PuzzleFormat.format(puzzle.board));
+							if(puzzle.solution != null) {
+								writer.write(' ');
+								writer.write(PuzzleFormat.format(PuzzleCodec.decodeBoard(puzzle.solution, puzzle.board.SIZE)));
+							}
+							writer.newLine();
+						}
+					}
+				}
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 生成して難易度を評価した問題
+	 */
+	private static class Generated {
+		final Puzzle puzzle; //問題
+		final Difficulty difficulty; //難易度
+
+		Generated(Puzzle puzzle, Difficulty difficulty) {
+			this.puzzle = puzzle;
+			this.difficulty = difficulty;
+		}
+	}
+
+	/**
+	 * 1つのサイズの問題を難易度ごとに蓄える棚
+	 * 問題の出し入れと補充の状態の更新はプールのロックを取って行う。
+	 * 生成器と評価器は補充のスレッドと取り出したスレッドの両方から使われるため、生成は棚のロックを取って行う。
+	 */
+	private class Shelf {
+		final int size; //盤面の一辺の長さ
+		final List<ArrayDeque<Puzzle>> queues = new ArrayList<>(); //難易度ごとの問題
+		final boolean[] refilling; //難易度ごとの補充中ならtrueのフラグ
+		final int[] misses; //難易度ごとの最後に現れてから生成した問題数(MAXATTEMPTSで止める)
+
+		private final PuzzleGenerator generator; //問題の生成器
+		private final LogicSolver rater = new LogicSolver(); //難易度の評価器
+		private final SplittableRandom random = new SplittableRandom(); //問題のシード値を作る乱数
+
+		Shelf(int size) {
+			this.size = size;
+			this.generator = new PuzzleGenerator(size, backend.create());
+			for(int i = 0; i < Difficulty.values().length; i++) {
+				queues.add(new ArrayDeque<>());
+			}
+			refilling = new boolean[queues.size()];
+			misses = new int[queues.size()];
+		}
+
+		/**
+		 * 問題を1つ生成して難易度を評価する
+		 * @return Generated : 生成した問題
+		 */
+		synchronized Generated generateOne() {
+			Puzzle puzzle = generator.generatePuzzle(random.nextLong());
+			LogicSolver.Rating rating = rater.rate(puzzle.board);
+			return new Generated(puzzle, rating.difficulty);
+		}
+
+		/**
+		 * 生成した問題の難易度を記録する
+		 * 現れた難易度は数え直し、それ以外の難易度は現れなかった回数を1増やす。
+		 * @param difficulty : Difficulty : 生成した問題の難易度
+		 */
+		void record(Difficulty difficulty) {
+			for(int i = 0; i < misses.length; i++) {
+				if(i == difficulty.ordinal()) {
+					misses[i] = 0;
+				}else if(misses[i] < MAXATTEMPTS) {
+					misses[i]++;
+				}
+			}
+		}
+
+		/**
+		 * 難易度の補充が必要か判定する
+		 * 下限を下回った難易度は、上限に達するか、続けてMAXATTEMPTS回現れなくなるまで補充する。
+		 * @param index : int : 難易度の番号
+		 * @return boolean : 補充が必要ならtrue
+		 */
+		boolean needsRefill(int index) {
+			int count = queues.get(index).size();
+			if(misses[index] >= MAXATTEMPTS || count >= capacity) {
+				refilling[index] = false;
+			}else if(count < lowWater) {
+				refilling[index] = true;
+			}
+			return refilling[index];
+		}
+
+		/**
+		 * 問題を加える(その難易度が上限に達していれば加えない)
+		 * @param generated : Generated : 加える問題
+		 */
+		void offer(Generated generated) {
+			ArrayDeque<Puzzle> queue = queues.get(generated.difficulty.ordinal());
+			if(queue.size() < capacity) {
+				queue.add(generated.puzzle);
+			}
+		}
+
+		/**
+		 * 問題を1つ取り出す
+		 * @param difficulty : Difficulty : 難易度(nullの場合は最も多く蓄えられている難易度)
+		 * @return Puzzle : 問題(蓄えがなければnull)
+		 */
+		Puzzle poll(Difficulty difficulty) {
+			ArrayDeque<Puzzle> queue = null;
+			if(difficulty != null) {
+				queue = queues.get(difficulty.ordinal());
+			}else {
+				for(ArrayDeque<Puzzle> q : queues) {
+					if(queue == null || q.size() > queue.size()) {
+						queue = q;
+					}
+				}
+			}
+			return queue.poll();
+		}
+	}
+}
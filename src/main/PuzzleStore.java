@@ -0,0 +1,279 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 生成済みの問題を保存する追記専用のファイル
+ * 問題と解答はPuzzleCodecで詰めてデータファイル(.dat)に追記し、
+ * 盤面サイズ・ヒント数・難易度とデータの位置を固定長のエントリとして索引ファイル(.idx)に追記する。
+ * 開いたときに索引をキーごとの位置の配列として読み込むため、
+ * 条件に合う問題をファイルを走査せずにランダムに取り出せる。
+ * 追記と読み込みは同期しているため、インスタンスは複数スレッドから利用できる。
+ */
+public class PuzzleStore implements Closeable {
+	private static final int ENTRYBYTES = 16; //索引のエントリの大きさ[byte]
+
+	private final FileChannel data; //問題と解答のデータ
+	private final FileChannel index; //索引
+	private final Map<Integer, Bucket> buckets = new HashMap<>(); //キーごとのデータの位置
+	private long dataSize; //データファイルの有効な大きさ[byte]
+	private long entries; //保存されている問題数
+
+	/**
+	 * コンストラクタ
+	 * ファイルがなければ作成する。書き込み途中で終了した場合の不完全な末尾は切り捨てる。
+	 * @param base : Path : ファイル名(拡張子.dat / .idxを付けて利用する)
+	 * @throws IOException : ファイルを開けなかったときのエラー
+	 */
+	public PuzzleStore(Path base) throws IOException {
+		data = FileChannel.open(Paths.get(base + ".dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		index = FileChannel.open(Paths.get(base + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		load();
+	}
+
+	/**
+	 * 問題と解答を追記する
+	 * データを書き込んでから索引を書き込むため、途中で終了しても索引が不正な位置を指すことはない。
+	 * @param puzzle : Board : 問題の盤面
+	 * @param solution : Board : 解答の盤面
+	 * @param difficulty : Difficulty : 問題の難易度
+	 * @throws IOException : 書き込みに失敗したときのエラー
+	 */
+	public synchronized void append(Board puzzle, Board solution, Difficulty difficulty) throws IOException {
+		int size = puzzle.SIZE;
+		int clues = size * size - puzzle.countBlanks();
+		byte[] record = PuzzleCodec.encode(puzzle, solution);
+		writeFully(data, ByteBuffer.wrap(record), dataSize);
+
+		ByteBuffer entry = ByteBuffer.allocate(ENTRYBYTES);
+		entry.putLong(dataSize).put((byte)size).put((byte)difficulty.ordinal()).putShort((short)clues).putInt(0).flip();
+		writeFully(index, entry, entries * ENTRYBYTES);
+
+		bucket(size, difficulty, clues).add(dataSize);
+		dataSize += record.length;
+		entries++;
+	}
+
+	/**
+	 * 条件に合う問題の数を返す
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param difficulty : Difficulty : 難易度(nullの場合は全ての難易度)
+	 * @param minClues : int : ヒント数の下限
+	 * @param maxClues : int : ヒント数の上限
+	 * @return long : 問題数
+	 */
+	public synchronized long count(int size, Difficulty difficulty, int minClues, int maxClues) {
+		long total = 0;
+		for(Difficulty d : Difficulty.values()) {
+			if(difficulty != null && d != difficulty) {
+				continue;
+			}
+			for(int clues = Math.max(0, minClues); clues <= Math.min(size * size, maxClues); clues++) {
+				Bucket bucket = buckets.get(key(size, d, clues));
+				if(bucket != null) {
+					total += bucket.count;
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 条件に合う問題を1つランダムに取り出す
+	 * 走査するのはキー(難易度とヒント数の組)のみで、問題数にはよらない。
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param difficulty : Difficulty : 難易度(nullの場合は全ての難易度)
+	 * @param minClues : int : ヒント数の下限
+	 * @param maxClues : int : ヒント数の上限
+	 * @param random : SplittableRandom : 問題を選ぶ乱数
+	 * @return Entry : 取り出した問題(条件に合う問題がなければnull)
+	 * @throws IOException : 読み込みに失敗したときのエラー
+	 */
+	public synchronized Entry random(int size, Difficulty difficulty, int minClues, int maxClues, SplittableRandom random) throws IOException {
+		long total = count(size, difficulty, minClues, maxClues);
+		if(total == 0) {
+			return null;
+		}
+		long target = random.nextLong(total);
+		for(Difficulty d : Difficulty.values()) {
+			if(difficulty != null && d != difficulty) {
+				continue;
+			}
+			for(int clues = Math.max(0, minClues); clues <= Math.min(size * size, maxClues); clues++) {
+				Bucket bucket = buckets.get(key(size, d, clues));
+				if(bucket == null) {
+					continue;
+				}
+				if(target < bucket.count) {
+					return read(bucket.offsets[(int)target], size, d, clues);
+				}
+				target -= bucket.count;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 保存されている問題数を返す
+	 * @return long : 問題数
+	 */
+	public synchronized long size() {
+		return entries;
+	}
+
+	/**
+	 * 書き込んだ内容をディスクに反映する
+	 * @throws IOException : 書き込みに失敗したときのエラー
+	 */
+	public synchronized void flush() throws IOException {
+		data.force(false);
+		index.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		}finally {
+			data.close();
+			index.close();
+		}
+	}
+
+	/**
+	 * 索引を読み込んでキーごとの位置の配列を作る
+	 * 不完全なエントリや、データファイルの範囲外を指すエントリ以降は切り捨てる。
+	 */
+	private void load() throws IOException {
+		long fileData = data.size();
+		long count = index.size() / ENTRYBYTES;
+		ByteBuffer buffer = ByteBuffer.allocate(ENTRYBYTES * 4096);
+		long position = 0;
+		dataSize = 0;
+		entries = 0;
+		while(entries < count) {
+			buffer.clear();
+			buffer.limit((int)Math.min(buffer.capacity(), (count - entries) * ENTRYBYTES));
+			while(buffer.hasRemaining()) {
+				if(index.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			position += buffer.limit();
+			while(buffer.remaining() >= ENTRYBYTES) {
+				long offset = buffer.getLong();
+				int size = buffer.get();
+				int difficulty = buffer.get();
+				int clues = buffer.getShort();
+				buffer.getInt();
+				if(PuzzleFormat.sizeOf(size * size) == 0 || difficulty < 0 || difficulty >= Difficulty.values().length
+						|| offset != dataSize || offset + PuzzleCodec.recordBytes(size) > fileData) {
+					count = entries;
+					break;
+				}
+				bucket(size, Difficulty.values()[difficulty], clues).add(offset);
+				dataSize = offset + PuzzleCodec.recordBytes(size);
+				entries++;
+			}
+			if(buffer.limit() == 0) {
+				break;
+			}
+		}
+		index.truncate(entries * ENTRYBYTES);
+		data.truncate(dataSize);
+	}
+
+	/**
+	 * データファイルから問題と解答を読み込む
+	 */
+	private Entry read(long offset, int size, Difficulty difficulty, int clues) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(PuzzleCodec.recordBytes(size));
+		while(buffer.hasRemaining()) {
+			if(data.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("データファイルが途中で終わっています");
+			}
+		}
+		byte[] record = buffer.array();
+		return new Entry(size, clues, difficulty, PuzzleCodec.decodePuzzle(record, 0, size), PuzzleCodec.decodeSolution(record, 0, size));
+	}
+
+	/**
+	 * キーに対応する位置の配列を返す(なければ作成する)
+	 */
+	private Bucket bucket(int size, Difficulty difficulty, int clues) {
+		return buckets.computeIfAbsent(key(size, difficulty, clues), k -> new Bucket());
+	}
+
+	/**
+	 * 盤面サイズ・難易度・ヒント数をキーにまとめる
+	 */
+	private static int key(int size, Difficulty difficulty, int clues) {
+		return (size << 24) | (difficulty.ordinal() << 16) | clues;
+	}
+
+	/**
+	 * バッファの内容を全て書き込む
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * 1つのキーに属する問題のデータの位置
+	 */
+	private static class Bucket {
+		long[] offsets = new long[16]; //データの位置
+		int count; //問題数
+
+		/**
+		 * 位置を追加する
+		 * @param offset : long : データの位置
+		 */
+		void add(long offset) {
+			if(count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+			}
+			offsets[count++] = offset;
+		}
+	}
+
+	/**
+	 * 保存されている問題
+	 */
+	public static class Entry {
+		public final int size; //盤面の一辺の長さ
+		public final int clues; //ヒントの数
+		public final Difficulty difficulty; //難易度
+		public final Board puzzle; //問題の盤面
+		public final Board solution; //解答の盤面
+
+		/**
+		 * コンストラクタ
+		 * @param size : int : 盤面の一辺の長さ
+		 * @param clues : int : ヒントの数
+		 * @param difficulty : Difficulty : 難易度
+		 * @param puzzle : Board : 問題の盤面
+		 * @param solution : Board : 解答の盤面
+		 */
+		Entry(int size, int clues, Difficulty difficulty, Board puzzle, Board solution) {
+			this.size = size;
+			this.clues = clues;
+			this.difficulty = difficulty;
+			this.puzzle = puzzle;
+			this.solution = solution;
+		}
+	}
+}
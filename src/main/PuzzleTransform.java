@@ -0,0 +1,126 @@
+package main;
+
+import java.util.SplittableRandom;
+
+/**
+ * 盤面の対称変換
+ * 転置・バンドとスタックの入れ替え・バンド内の行とスタック内の列の入れ替え・数字の付け替えを組み合わせた変換を表す。
+ * これらの変換は数独のルールを保つため、解がユニークな問題は変換後も解がユニークで、
+ * ヒントの数と解くのに必要なテクニック(難易度)も変わらない。
+ * 変換はセルの並べ替えと値の置き換えのみで、ソルバを利用しない。
+ * インスタンスは変換を表す配列を持つため、スレッド間で共有しないこと。
+ */
+public class PuzzleTransform {
+	public final int SIZE; //盤面の一辺の長さ
+	private final int sizeSqrt; //格子の一辺の長さ
+	private final int[] rowMap; //変換後の行に対応する変換前の行
+	private final int[] colMap; //変換後の列に対応する変換前の列
+	private final int[] digitMap; //変換前の値に対応する変換後の値(0は空欄)
+	private boolean transpose; //変換前の盤面を転置してから並べ替えるならtrue
+	private final int[] blocks; //並べ替えの作業領域
+	private final int[] lines; //並べ替えの作業領域
+
+	/**
+	 * コンストラクタ
+	 * 作成直後は何も変えない変換を表す。
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 */
+	public PuzzleTransform(int size) {
+		SIZE = size;
+		sizeSqrt = (int)Math.sqrt((double)size);
+		if(size != sizeSqrt * sizeSqrt) {
+			System.err.println("引数が平方数ではありません");
+		}
+		rowMap = new int[size];
+		colMap = new int[size];
+		digitMap = new int[size + 1];
+		blocks = new int[sizeSqrt];
+		lines = new int[sizeSqrt];
+		for(int i = 0; i < size; i++) {
+			rowMap[i] = i;
+			colMap[i] = i;
+		}
+		for(int value = 0; value <= size; value++) {
+			digitMap[value] = value;
+		}
+	}
+
+	/**
+	 * 変換をランダムに選び直す
+	 * 並べ替えはSudoku.shuffleで作るため、同じシード値の乱数からは同じ変換になる。
+	 * @param random : SplittableRandom : 利用する乱数
+	 */
+	public void randomize(SplittableRandom random) {
+		randomizeLines(rowMap, random);
+		randomizeLines(colMap, random);
+		int[] digits = new int[SIZE];
+		for(int i = 0; i < SIZE; i++) {
+			digits[i] = i + 1;
+		}
+		Sudoku.shuffle(digits, random);
+		System.arraycopy(digits, 0, digitMap, 1, SIZE);
+		transpose = random.nextBoolean();
+	}
+
+	/**
+	 * 行(列)の並びを、ブロックの入れ替えとブロック内の入れ替えでランダムに作る
+	 * @param map : int[] : 並びの書き込み先
+	 * @param random : SplittableRandom : 利用する乱数
+	 */
+	private void randomizeLines(int[] map, SplittableRandom random) {
+		for(int i = 0; i < sizeSqrt; i++) {
+			blocks[i] = i;
+		}
+		Sudoku.shuffle(blocks, random);
+		for(int block = 0; block < sizeSqrt; block++) {
+			for(int i = 0; i < sizeSqrt; i++) {
+				lines[i] = i;
+			}
+			Sudoku.shuffle(lines, random);
+			for(int i = 0; i < sizeSqrt; i++) {
+				map[block * sizeSqrt + i] = blocks[block] * sizeSqrt + lines[i];
+			}
+		}
+	}
+
+	/**
+	 * セルごとの値の配列を変換する
+	 * @param values : int[] : 変換前の値(0は空欄、[1, SIZE]は数字)。行順にSIZE*SIZE個
+	 * @param out : int[] : 変換後の値の書き込み先(valuesとは別の配列)
+	 */
+	public void apply(int[] values, int[] out) {
+		for(int row = 0; row < SIZE; row++) {
+			int fromRow = rowMap[row];
+			for(int col = 0; col < SIZE; col++) {
+				int fromCol = colMap[col];
+				int from = transpose ? fromCol * SIZE + fromRow : fromRow * SIZE + fromCol;
+				out[row * SIZE + col] = digitMap[values[from]];
+			}
+		}
+	}
+
+	/**
+	 * 盤面を変換する
+	 * @param board : Board : 変換前の盤面(変更されない)
+	 * @return Board : 変換後の盤面(問題盤面として登録されていない)
+	 */
+	public Board apply(Board board) {
+		int[] values = new int[SIZE * SIZE];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = board.getCell(i / SIZE + 1, i % SIZE + 1);
+		}
+		int[] out = new int[values.length];
+		apply(values, out);
+		Board transformed = new Board(SIZE);
+		for(int i = 0; i < out.length; i++) {
+			if(out[i] != 0) {
+				try {
+					transformed.setCell(i / SIZE + 1, i % SIZE + 1, out[i]);
+				}catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return transformed;
+	}
+}
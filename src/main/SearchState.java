@@ -0,0 +1,242 @@
+package main;
+
+/**
+ * 探索用の盤面状態
+ * 盤面を一次元のint配列で保持し、行・列・格子ごとの使用済み数字をビットマスクで管理する。
+ * 値の代入はトレイル(代入履歴)に積まれ、undoで指定の時点まで巻き戻せるため、
+ * 探索の分岐ごとに盤面をコピーする必要がない。
+ * 生成後は代入と巻き戻しでメモリを確保しない。
+ */
+public class SearchState {
+	public static final int BLANK = -1; //空欄を表す値
+
+	public final int SIZE; //盤面の一辺の長さ
+	public final int SIZESQRT; //格子の一辺の長さ
+
+	private final int[] cells; //盤面を一次元にしたもの。値は[0, SIZE) か BLANK
+	private final BoardGeometry geometry; //盤面サイズごとに共有される位置関係の表
+
+	private final int[] rowUsed; //行ごとの使用済み数字
+	private final int[] colUsed; //列ごとの使用済み数字
+	private final int[] boxUsed; //格子ごとの使用済み数字
+	private final int fullMask; //全ての数字のビットが立ったマスク
+
+	private final int[] trail; //代入したセル番号の履歴
+	private int trailSize; //履歴の長さ
+	private int blankCount; //空欄の数
+
+	/**
+	 * コンストラクタ
+	 * 全てのセルが空欄の状態を作成する
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 */
+	public SearchState(int size) {
+		int sizeSqrt = (int)Math.sqrt((double)size);
+		if(size != sizeSqrt * sizeSqrt) {
+			System.err.println("引数が平方数ではありません");
+		}
+		SIZE = size;
+		SIZESQRT = sizeSqrt;
+		fullMask = (1 << size) - 1;
+
+		geometry = BoardGeometry.of(size);
+		cells = new int[geometry.CELLS];
+		trail = new int[geometry.CELLS];
+		rowUsed = new int[size];
+		colUsed = new int[size];
+		boxUsed = new int[size];
+		clear();
+	}
+
+	/**
+	 * コピーコンストラクタ
+	 * 値と使用済み数字をコピーする。履歴はコピーせず、コピー後の状態が起点となる。
+	 * @param state : SearchState : コピー元の状態
+	 */
+	public SearchState(SearchState state) {
+		SIZE = state.SIZE;
+		SIZESQRT = state.SIZESQRT;
+		fullMask = state.fullMask;
+		geometry = state.geometry;
+		cells = state.cells.clone();
+		trail = new int[cells.length];
+		rowUsed = state.rowUsed.clone();
+		colUsed = state.colUsed.clone();
+		boxUsed = state.boxUsed.clone();
+		trailSize = 0;
+		blankCount = state.blankCount;
+	}
+
+	/**
+	 * 全てのセルを空欄にし、履歴を消去する
+	 */
+	public void clear() {
+		for(int i = 0; i < cells.length; i++) {
+			cells[i] = BLANK;
+		}
+		for(int i = 0; i < SIZE; i++) {
+			rowUsed[i] = 0;
+			colUsed[i] = 0;
+			boxUsed[i] = 0;
+		}
+		trailSize = 0;
+		blankCount = cells.length;
+	}
+
+	/**
+	 * 盤面の値を読み込む。読み込んだ値は履歴に積まれない。
+	 * @param board : Board : 読み込む盤面(サイズが一致している必要がある)
+	 * @return boolean : 盤面が数独の制約を満たしていなければ false
+	 */
+	public boolean load(Board board) {
+		clear();
+		for(int i = 0; i < cells.length; i++) {
+			int value = board.getCell(geometry.rowOf(i)+1, geometry.colOf(i)+1) - 1;
+			if(value == BLANK) {
+				continue;
+			}
+			if(!canPlace(i, value)) {
+				return false;
+			}
+			place(i, value);
+		}
+		trailSize = 0;
+		return true;
+	}
+
+	/**
+	 * 一次元の配列で表された盤面の値を読み込む。読み込んだ値は履歴に積まれない。
+	 * @param values : int[] : セル番号ごとの値[0, SIZE) か BLANK(長さSIZE*SIZE)
+	 * @return boolean : 盤面が数独の制約を満たしていなければ false
+	 */
+	public boolean load(int[] values) {
+		clear();
+		for(int i = 0; i < cells.length; i++) {
+			int value = values[i];
+			if(value == BLANK) {
+				continue;
+			}
+			if(!canPlace(i, value)) {
+				return false;
+			}
+			place(i, value);
+		}
+		return true;
+	}
+
+	/**
+	 * セルの値を返す
+	 * @param cell : int : セル番号[0, SIZE*SIZE)
+	 * @return int : セルの値[0, SIZE)（空欄の場合はBLANK）
+	 */
+	public int get(int cell) {
+		return cells[cell];
+	}
+
+	/**
+	 * セルに置ける数字の集合を返す
+	 * @param cell : int : セル番号[0, SIZE*SIZE)
+	 * @return int : 置ける数字のビットが立ったマスク
+	 */
+	public int candidates(int cell) {
+		return fullMask & ~(rowUsed[geometry.rowOf(cell)] | colUsed[geometry.colOf(cell)] | boxUsed[geometry.boxOf(cell)]);
+	}
+
+	/**
+	 * ユニットの使用済み数字を返す
+	 * @param unit : int : ユニット番号(行[0, SIZE)・列[SIZE, 2*SIZE)・格子[2*SIZE, 3*SIZE))
+	 * @return int : 使用済みの数字のビットが立ったマスク
+	 */
+	int used(int unit) {
+		if(unit < SIZE) {
+			return rowUsed[unit];
+		}
+		if(unit < 2 * SIZE) {
+			return colUsed[unit - SIZE];
+		}
+		return boxUsed[unit - 2 * SIZE];
+	}
+
+	/**
+	 * 空欄のセルに数独の制約を破らずに値を置けるか判定する
+	 * @param cell : int : セル番号[0, SIZE*SIZE)
+	 * @param value : int : 置く値[0, SIZE)
+	 * @return boolean : 置けるならtrue
+	 */
+	public boolean canPlace(int cell, int value) {
+		return cells[cell] == BLANK && (candidates(cell) & (1 << value)) != 0;
+	}
+
+	/**
+	 * 空欄のセルに値を代入し、履歴に積む。
+	 * 呼び出し側でcanPlaceを満たしていることを保証すること。
+	 * @param cell : int : セル番号[0, SIZE*SIZE)
+	 * @param value : int : 代入する値[0, SIZE)
+	 */
+	public void assign(int cell, int value) {
+		place(cell, value);
+		trail[trailSize++] = cell;
+	}
+
+	/**
+	 * 現在の履歴の位置を返す。undoに渡すと、この時点まで巻き戻せる。
+	 * @return int : 履歴の位置
+	 */
+	public int mark() {
+		return trailSize;
+	}
+
+	/**
+	 * 指定の履歴の位置まで代入を取り消す
+	 * @param mark : int : markで取得した履歴の位置
+	 */
+	public void undo(int mark) {
+		while(trailSize > mark) {
+			int cell = trail[--trailSize];
+			int bit = 1 << cells[cell];
+			rowUsed[geometry.rowOf(cell)] ^= bit;
+			colUsed[geometry.colOf(cell)] ^= bit;
+			boxUsed[geometry.boxOf(cell)] ^= bit;
+			cells[cell] = BLANK;
+			blankCount++;
+		}
+	}
+
+	/**
+	 * 空欄の数を返す
+	 * @return int : 空欄の数
+	 */
+	public int countBlanks() {
+		return blankCount;
+	}
+
+	/**
+	 * セルの数を返す
+	 * @return int : SIZE*SIZE
+	 */
+	public int cellCount() {
+		return cells.length;
+	}
+
+	/**
+	 * 盤面の値を配列に書き出す
+	 * @param dest : int[] : 書き出し先(長さSIZE*SIZE以上)
+	 */
+	public void copyCells(int[] dest) {
+		System.arraycopy(cells, 0, dest, 0, cells.length);
+	}
+
+	/**
+	 * セルに値を置いて使用済み数字を更新する
+	 * @param cell : int : セル番号
+	 * @param value : int : 置く値
+	 */
+	private void place(int cell, int value) {
+		int bit = 1 << value;
+		cells[cell] = value;
+		rowUsed[geometry.rowOf(cell)] |= bit;
+		colUsed[geometry.colOf(cell)] |= bit;
+		boxUsed[geometry.boxOf(cell)] |= bit;
+		blankCount--;
+	}
+}
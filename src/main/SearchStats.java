@@ -0,0 +1,172 @@
+package main;
+
+/**
+ * ソルバの探索の統計
+ * ソルバごとに1つ持ち、resetするまで全ての探索の値を累積する。
+ * 探索中の更新はフィールドの加算のみのため、計測のために探索が遅くなることはほとんどない。
+ * 1回の探索ごとの値はJFRのSolveEventとして記録される(JFRが無効な場合は記録しない)。
+ */
+public class SearchStats {
+	long searches; //探索の回数
+	long nodes; //探索で値を置いた回数
+	long backtracks; //候補がなく引き返した回数
+	long propagations; //テクニックで確定したセルと取り除いた候補の数
+	int maxDepth; //探索の最大の深さ
+	long searchNanos; //探索の経過時間の合計[ns]
+
+	int searchDepth; //実行中の探索の最大の深さ
+
+	/**
+	 * 全ての値を0にする
+	 */
+	public void reset() {
+		searches = 0;
+		nodes = 0;
+		backtracks = 0;
+		propagations = 0;
+		maxDepth = 0;
+		searchNanos = 0;
+		searchDepth = 0;
+	}
+
+	/**
+	 * 他の統計の値を加える
+	 * @param other : SearchStats : 加える統計
+	 */
+	public void add(SearchStats other) {
+		searches += other.searches;
+		nodes += other.nodes;
+		backtracks += other.backtracks;
+		propagations += other.propagations;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		searchNanos += other.searchNanos;
+	}
+
+	/**
+	 * 以前のコピーからの増分を加える
+	 * 最大の深さは増分を求められないため、currentの値と比べて大きい方にする。
+	 * @param current : SearchStats : 現在の統計
+	 * @param previous : SearchStats : 以前にcopyで取った統計
+	 */
+	public void addSince(SearchStats current, SearchStats previous) {
+		searches += current.searches - previous.searches;
+		nodes += current.nodes - previous.nodes;
+		backtracks += current.backtracks - previous.backtracks;
+		propagations += current.propagations - previous.propagations;
+		maxDepth = Math.max(maxDepth, current.maxDepth);
+		searchNanos += current.searchNanos - previous.searchNanos;
+	}
+
+	/**
+	 * 現在の値のコピーを返す
+	 * @return SearchStats : コピー
+	 */
+	public SearchStats copy() {
+		SearchStats copy = new SearchStats();
+		copy.add(this);
+		return copy;
+	}
+
+	/**
+	 * 探索の回数を返す
+	 * @return long : 解の個数を数えた・解を求めた回数
+	 */
+	public long getSearches() {
+		return searches;
+	}
+
+	/**
+	 * 探索で値を置いた回数を返す
+	 * @return long : ノード数
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 候補がなく引き返した回数を返す
+	 * @return long : バックトラック数
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * テクニックで確定したセルと取り除いた候補の数を返す
+	 * @return long : 伝播の回数
+	 */
+	public long getPropagations() {
+		return propagations;
+	}
+
+	/**
+	 * 探索の最大の深さを返す
+	 * @return int : 深さ
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * 探索の経過時間の合計を返す
+	 * @return long : 経過時間[ns]
+	 */
+	public long getSearchNanos() {
+		return searchNanos;
+	}
+
+	/**
+	 * 探索の深さを記録する
+	 * @param depth : int : 現在の深さ
+	 */
+	void depth(int depth) {
+		if(depth > searchDepth) {
+			searchDepth = depth;
+		}
+	}
+
+	/**
+	 * 1回の探索の開始を記録する
+	 * @return SolveEvent : endに渡すイベント
+	 */
+	SolveEvent begin() {
+		SolveEvent event = new SolveEvent();
+		event.startNanos = System.nanoTime();
+		event.nodes = nodes;
+		event.backtracks = backtracks;
+		searchDepth = 0;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * 1回の探索の終了を記録する
+	 * @param event : SolveEvent : beginで受け取ったイベント
+	 * @param solver : String : ソルバの名前
+	 * @param size : int : 盤面の一辺の長さ
+	 * @param limit : int : 解の個数の上限
+	 * @param solutions : int : 見つかった解の個数
+	 */
+	void end(SolveEvent event, String solver, int size, int limit, int solutions) {
+		event.end();
+		searches++;
+		searchNanos += System.nanoTime() - event.startNanos;
+		maxDepth = Math.max(maxDepth, searchDepth);
+		if(event.shouldCommit()) {
+			event.solver = solver;
+			event.size = size;
+			event.limit = limit;
+			event.solutions = solutions;
+			event.nodes = nodes - event.nodes;
+			event.backtracks = backtracks - event.backtracks;
+			event.maxDepth = searchDepth;
+			event.commit();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("searches %d, nodes %d, backtracks %d, propagations %d, max depth %d, search %.3f ms",
+				searches, nodes, backtracks, propagations, maxDepth, searchNanos / 1e6);
+	}
+}
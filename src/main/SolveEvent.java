@@ -0,0 +1,42 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 1回の探索を表すJFRのイベント
+ * SearchStatsのbegin/endから記録する。
+ */
+@Name("main.Solve")
+@Label("Sudoku Solve")
+@Category("Sudoku")
+@Description("ソルバによる1回の解の個数の探索")
+@StackTrace(false)
+class SolveEvent extends Event {
+	@Label("Solver")
+	String solver; //ソルバの名前
+
+	@Label("Size")
+	int size; //盤面の一辺の長さ
+
+	@Label("Limit")
+	int limit; //解の個数の上限
+
+	@Label("Solutions")
+	int solutions; //見つかった解の個数
+
+	@Label("Nodes")
+	long nodes; //探索で値を置いた回数
+
+	@Label("Backtracks")
+	long backtracks; //候補がなく引き返した回数
+
+	@Label("Max Depth")
+	int maxDepth; //探索の最大の深さ
+
+	transient long startNanos; //探索の開始時刻[ns](記録しない)
+}
@@ -0,0 +1,94 @@
+package main;
+
+/**
+ * 数独ソルバの共通インターフェース
+ * 解の個数の計算、上限付きの計算、解の1つを求める操作を提供する。
+ */
+public interface Solver {
+	public static final int UNKNOWN = -1; //探索ノード数の上限で打ち切ったため解の個数が分からないことを表す値
+
+	/**
+	 * 引数の盤面が持つ解の個数を返す
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @return int : 解の個数
+	 */
+	default int countSolutions(Board board) {
+		return countSolutions(board, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 引数の盤面が持つ解の個数を上限付きで返す
+	 * 解の個数がlimitに達した時点で探索を打ち切る。
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit)
+	 */
+	int countSolutions(Board board, int limit);
+
+	/**
+	 * 引数の盤面が持つ解の個数を、解の個数と探索ノード数の上限付きで返す
+	 * 探索ノード数がmaxNodesに達した時点で探索を打ち切り、UNKNOWNを返す。
+	 * 上限に対応しないソルバでは、maxNodesを無視して最後まで探索する。
+	 * @param board : Board : 解の個数が知りたい盤面
+	 * @param limit : int : 数える解の個数の上限
+	 * @param maxNodes : long : 探索ノード数の上限
+	 * @return int : 解の個数(limit以上の場合はlimit、ノード数の上限で打ち切った場合はUNKNOWN)
+	 */
+	default int countSolutions(Board board, int limit, long maxNodes) {
+		return countSolutions(board, limit);
+	}
+
+	/**
+	 * 引数の盤面の解がただ1つであるか判定する
+	 * 2つ目の解が見つかった時点で探索を打ち切る。
+	 * @param board : Board : 判定する盤面
+	 * @return boolean : 解がユニークならtrue
+	 */
+	default boolean hasUniqueSolution(Board board) {
+		return countSolutions(board, 2) == 1;
+	}
+
+	/**
+	 * 引数の盤面の解を1つ求める
+	 * @param board : Board : 解きたい盤面
+	 * @return Board : 解の盤面(解がない場合はnull)
+	 */
+	Board solve(Board board);
+
+	/**
+	 * 探索の統計を返す
+	 * 値はresetするまで累積される。
+	 * @return SearchStats : このソルバの統計
+	 */
+	SearchStats getStats();
+
+	/**
+	 * 選択できるソルバの種類
+	 */
+	public enum Backend {
+		BITMASK, //ビットマスクとMRVによる探索
+		DLX, //Dancing Linksによる厳密被覆問題の探索
+		PARALLEL, //ForkJoinPoolによるビットマスク探索の並列実行
+		LOGIC, //テクニックによる確定の後にビットマスク探索
+		BRUTE_FORCE; //盤面をコピーしながらの全探索
+
+		/**
+		 * 種類に対応するソルバを生成する
+		 * @return Solver : 生成されたソルバ
+		 */
+		public Solver create() {
+			switch(this) {
+			case DLX:
+				return new DlxSolver();
+			case PARALLEL:
+				return new ParallelSolver();
+			case LOGIC:
+				return new LogicSolver();
+			case BRUTE_FORCE:
+				return new BruteForceSolver();
+			default:
+				return new BitSolver();
+			}
+		}
+	}
+}
@@ -1,19 +1,30 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
+import java.util.SplittableRandom;
 
 /**
  * 数独を遊べるゲーム管理クラス
  */
 public class Sudoku {
 	private final int DEFAULTSIZE = 9;
-	private final double BLANKRATE = 0.60;
 	
 	private Scanner scan;
 	
 	private Board board;
 	private int size = DEFAULTSIZE;
 	
+	private Solver solver = new BitSolver(); //解の個数を数えるソルバ
+	private long seed = new SplittableRandom().nextLong(); //問題を再生成するためのシード値
+	private boolean showCandidates = false; //盤面を候補(ペンシルマーク)付きで表示するならtrue
+	private byte[] solution; //PuzzleCodec.encodeBoardで詰めた解答
+	private boolean checking = false; //入力を解答と照合するならtrue
+	private MoveJournal journal; //手の記録(ゲームの開始時に作る)
+	private final BoardRenderer renderer = new BoardRenderer(System.out, BoardRenderer.configuredMode()); //盤面の表示
+	private boolean resigned = false; //RESIGNコマンドで投了したならtrue
+	
 	
 	/**
 	 * コンストラクタ
@@ -52,158 +63,168 @@ public class Sudoku {
 //		System.out.println("解の個数 : " + countBoardAnswer(board));
 	}
 	
+	/**
+	 * コンストラクタ
+	 * 共有のPuzzlePoolから生成済みの問題を取り出して、ボードをメンバとして登録する
+	 * プールに蓄えがない場合のみ、その場で生成する。
+	 * @param scan : Scanner : 入力を受け付けるScanner
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 */
 	public Sudoku(Scanner scan, int size) {
-		//sizeが平方数かの判定
-		int sizeSqrt = (int)Math.sqrt((double)size);
-		if(size != sizeSqrt * sizeSqrt) {
-			System.err.println("引数が平方数ではありません");
-		}
-
-		this.size = size;
+		this(scan, PuzzlePool.shared().take(size));
+	}
+	
+	/**
+	 * コンストラクタ
+	 * 生成済みの問題の盤面をボードとしてメンバに登録する
+	 * 問題が解答を持たない場合のみ、ここで1度だけ解を求めて照合用に保持する。
+	 * execCommandかexecScriptのみで遊ぶ場合は、scanにnullを指定できる。
+	 * @param scan : Scanner : 入力を受け付けるScanner
+	 * @param puzzle : Puzzle : 問題(盤面は登録前のもの)
+	 * @throws IllegalArgumentException : 解答を持たない問題に解がないときのエラー
+	 */
+	public Sudoku(Scanner scan, Puzzle puzzle) {
+		this.size = puzzle.board.SIZE;
 		this.scan = scan;
-		board = new Board(size);
-		board = genUniqueBoardAlt();
+		this.seed = puzzle.seed;
+		board = puzzle.board;
+		if(puzzle.solution != null) {
+			solution = puzzle.solution;
+		}else {
+			Board answer = solver.solve(board);
+			if(answer == null) {
+				throw new IllegalArgumentException("解のない問題です(シード値: " + puzzle.seed + ")");
+			}
+			solution = PuzzleCodec.encodeBoard(answer);
+		}
 		board.registerCells();
 	}
 	
 	/**
-	 * 白紙から回答を作成する。
-	 * （作成される回答集合は解の全体集合以下である）
-	 * @param size : int : 盤面のサイズ(平方数である必要がある)
-	 * @return　Board : 数独が完成している盤面
+	 * コンストラクタ
+	 * 記録されたゲームを、最後に記録された盤面から再開する
+	 * @param scan : Scanner : 入力を受け付けるScanner
+	 * @param journal : MoveJournal : MoveJournal.openで開いた記録
+	 */
+	public Sudoku(Scanner scan, MoveJournal journal) {
+		this(scan, journal.getPuzzle());
+		journal.restore(board);
+		this.journal = journal;
+	}
+	
+	/**
+	 * コンストラクタ
+	 * 盤面の生成に利用するソルバを指定して、ボードをメンバとして登録する
+	 * @param scan : Scanner : 入力を受け付けるScanner
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param backend : Solver.Backend : 解の判定に利用するソルバの種類
 	 */
-	private Board genAnswerBoard(int size) {
+	public Sudoku(Scanner scan, int size, Solver.Backend backend) {
+		this(scan, size, backend, new SplittableRandom().nextLong());
+	}
+	
+	/**
+	 * コンストラクタ
+	 * シード値を指定して盤面を生成し、ボードをメンバとして登録する
+	 * 同じサイズとシード値からは常に同じ問題が生成される。
+	 * @param scan : Scanner : 入力を受け付けるScanner
+	 * @param size : int : 盤面のサイズ（平方数である必要がある）
+	 * @param backend : Solver.Backend : 解の判定に利用するソルバの種類
+	 * @param seed : long : 問題のシード値
+	 */
+	public Sudoku(Scanner scan, int size, Solver.Backend backend, long seed) {
 		//sizeが平方数かの判定
 		int sizeSqrt = (int)Math.sqrt((double)size);
 		if(size != sizeSqrt * sizeSqrt) {
 			System.err.println("引数が平方数ではありません");
-			return null;
-		}
-		
-		Board board = new Board(size);
-		
-		int[] numLine = new int[size];
-		int[] startOffset = new int[sizeSqrt];
-		int[][] sectionOffset = new int[sizeSqrt][sizeSqrt];
-		for(int i = 0; i < sizeSqrt; i++) {
-			startOffset[i] = i;
-			for(int j = 0; j < sizeSqrt; j++) {
-				sectionOffset[i][j] = j;
-				numLine[(i*sizeSqrt)+j] = (i*sizeSqrt)+j + 1;
-			}
 		}
-		
-		//数字列と基準点をランダムにする
-		Sudoku.shuffle(numLine);
-		Sudoku.shuffle(startOffset);
-		for(int i = 0; i < sizeSqrt; i++) {
-			Sudoku.shuffle(sectionOffset[i]);
-		}
-		
-		for(int row = 0; row < size; row++) {
-			
-			for(int colGridOut = 0; colGridOut < sizeSqrt; colGridOut++) {
-				for(int colGridIn = 0; colGridIn < sizeSqrt; colGridIn++) {
 
-					int r = (row) % 9;
-					int c = (((colGridOut) * sizeSqrt ) + (colGridIn)) % size;
-					int n = numLine[(((colGridOut + sectionOffset[(int)row/sizeSqrt][row%sizeSqrt]) * sizeSqrt )
-							+ (colGridIn + startOffset[(int)row/sizeSqrt])) % size];
-					try {
-						board.setCell(r+1, c+1, n);
-					}catch(Exception e) {
-						e.printStackTrace();
-					}
-				}
-			}
-		}
-		
-		return board;
+		this.size = size;
+		this.scan = scan;
+		this.solver = backend.create();
+		this.seed = seed;
+		board = new Board(size);
+		board = genUniqueBoardAlt();
+		board.registerCells();
 	}
 	
 	/**
 	 * 解がユニークな盤面を作成して返す関数。
-	 * 回答となる盤面をgenAnswerBoardで作成してそこから解がユニークを維持してヒントを減らして生成する。
+	 * 生成はPuzzleGeneratorに委譲し、生成時に作られた解答は照合用に保持する。
 	 * @return Board : 作成された盤面
 	 */
 	private Board genUniqueBoardAlt() {
-		Board board = genAnswerBoard(size);
-		
-		
-		while(true) {
-			int row = (int)(Math.random()*size) + 1;
-			int col = (int)(Math.random()*size) + 1;
-			Board next = board.copyBoard();
-			next.resetCell(row, col);
-			
-			if(countBoardAnswer(next) != 1 ) {
-//				System.out.println(size*size*BLANKRATE);
-				if(board.countBlanks() < size*size*BLANKRATE){
-					board = genAnswerBoard(size);
-					continue;
-				}
-				break;
-			}
-			board = next;
-		}
-		
-		return board;
+		Puzzle puzzle = new PuzzleGenerator(size, solver).generatePuzzle(seed);
+		solution = puzzle.solution;
+		return puzzle.board;
 	}
 	
 	
 	/**
 	 * 解がユニークな盤面を作成して返す関数
 	 * 引数の盤面から全探索して解を作成する。
+	 * 探索は盤面をコピーせず、SearchStateへの代入と巻き戻しで行う。
 	 * @param board : Board : 種となる盤面
 	 * @return Board : 作成された盤面(解がない場合はnull)
 	 */
 	private Board genUniqueBoard(Board board) {
-		//現盤面がすでに数独の制約を満たさないなら枝刈り(再帰探索の打ち切り)をする。
-		if(!board.isCorrect()) {
+		//現盤面がすでに数独の制約を満たさないなら探索しない。
+		SearchState state = board.exportState();
+		if(state == null) {
 			return null;
 		}
-//		board.printBoard();
-		
-		boolean selected = false;
+		if(!genUniqueState(state, new BitSolver(), new SplittableRandom(seed))) {
+			return null;
+		}
+		Board ans = new Board(size);
+		ans.importState(state);
+		return ans;
+	}
+	
+	/**
+	 * 解がユニークになるまで状態に値を代入していく
+	 * 見つかった場合は代入後の状態のまま、見つからなければ呼び出し前の状態に戻して返る。
+	 * @param state : SearchState : 種となる状態
+	 * @param bitSolver : BitSolver : 解のユニーク性の判定に利用するソルバ
+	 * @param random : SplittableRandom : 探索の開始位置を決める乱数
+	 * @return boolean : 解がユニークな状態が見つかればtrue
+	 */
+	private boolean genUniqueState(SearchState state, BitSolver bitSolver, SplittableRandom random) {
+		int answers = bitSolver.countSolutions(state, 2);
+		if(answers == 1) {
+			return true;
+		}
+		//解が存在しないなら枝刈り(再帰探索の打ち切り)をする。
+		if(answers == 0) {
+			return false;
+		}
 
 		int rStart, cStart, nStart;
 
-		rStart = (int)(Math.random()*size);
-		cStart = (int)(Math.random()*size);
-		nStart = (int)(Math.random()*size);
+		rStart = random.nextInt(size);
+		cStart = random.nextInt(size);
+		nStart = random.nextInt(size);
 
+		int mark = state.mark();
 		for(int row = 1; row <= size; row++) {
 			for(int col = 1; col <= size; col++) {
 				for(int num = 1; num <= size; num++) {
 					int r, c, n;
-					r = ((rStart + row) % size )+1;
-					c = ((cStart + col) % size )+1;
-					n = ((nStart + num) % size )+1;
-					if(board.isBlank(r, c)) {
-						Board next = board.copyBoard();
-						try {
-							next.setCell(r, c, n);
-						}catch(Exception e) {
-							e.printStackTrace();
-						}
-						Board ans = genUniqueBoard(next);
-						if(ans == null) {
-							continue;
-						}
-						
-						if(1 == countBoardAnswer(board)) {
-							return board;
-						}else {
-							return ans;
+					r = (rStart + row) % size;
+					c = (cStart + col) % size;
+					n = (nStart + num) % size;
+					//数独の制約を満たさない値は代入しない(枝刈り)
+					if(state.canPlace(r * size + c, n)) {
+						state.assign(r * size + c, n);
+						if(genUniqueState(state, bitSolver, random)) {
+							return true;
 						}
+						state.undo(mark);
 					}
 				}
 			}
 		}
-		if(board.isSuccess()) {
-			return board;
-		}
-		return null;
+		return false;
 	}
 	
 	/**
@@ -212,94 +233,354 @@ public class Sudoku {
 	 * @return int : 解の個数
 	 */
 	private int countBoardAnswer(Board board) {
-		//現盤面がすでに数独の制約を満たさないなら枝刈り(再帰探索の打ち切り)をする。
-		if(!board.isCorrect()) {
-			return 0;
-		}
-		
-		boolean selected = false;
-		
-		int counter = 0;
-		int rStart, cStart, nStart;
-
-//		rStart = (int)(Math.random()*BOARDSIZE);
-//		cStart = (int)(Math.random()*BOARDSIZE);
-//		nStart = (int)(Math.random()*BOARDSIZE);
-		rStart = 0;
-		cStart = 0;
-		nStart = 0;
-		
-		for(int row = 1; row <= size; row++) {
-			for(int col = 1; col <= size; col++) {
-				for(int num = 1; num <= size; num++) {
-					int r, c, n;
-					r = ((rStart + row) % size )+1;
-					c = ((cStart + col) % size )+1;
-					n = ((nStart + num) % size )+1;
-					if(board.isBlank(r, c)) {
-						Board next = board.copyBoard();
-						try {
-							next.setCell(r, c, n);
-						}catch(Exception e) {
-							e.printStackTrace();
-						}
-//						next.printBoard();
-						counter += countBoardAnswer(next);
-						selected = true;
-					}
-				}
-				if(selected) {
-					if(board.isSuccess()) {
-						counter++;
-//						board.printBoard();
-					}
-					return counter;
-				}
-			}
-		}
-		if(board.isSuccess()) {
-			counter++;
-//			board.printBoard();
-		}
-		return counter;
+		return solver.countSolutions(board);
+	}
+	
+	/**
+	 * 問題のシード値を返す
+	 * PuzzleGenerator.regenerateに渡すと同じ問題を再生成できる。
+	 * @return long : シード値
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * 現在の盤面を返す
+	 * @return Board : 現在の盤面
+	 */
+	public Board getBoard() {
+		return board;
 	}
 	
 	/**
 	 * ゲームを開始して終了まで続ける
+	 * 行の入力の代わりに h でヒント、p で候補(ペンシルマーク)の表示の切り替え、c で解答との照合の切り替えを行う。
+	 * 照合中は入力したセルのみを保持している解答と比べるため、プレイ中にソルバは利用しない。
+	 * u で1手戻し、r で戻した手をやり直す。手はMoveJournalに記録し、ゲームが終わったら記録を削除する。
+	 * 盤面の表示方法はシステムプロパティBoardRenderer.MODEPROPERTYで選ぶ(diffで変わったセルのみを書き換える)。
 	 */
 	public void execGame() {
-		board.printBoard();
+		if(journal == null) {
+			journal = createJournal(MoveJournal.configuredFile());
+		}
+		printBoard();
 		
 		while(!board.isFilled()) {
+			int row = inputRowOrCommand();
+			if(row == 0) {
+				continue;
+			}
+			//メッセージはDIFFの表示で消されないよう、盤面を表示した後に出力する
+			String notice = null;
 			try {
 				//入力をboardに反映
-				board.setCell(
-						inputRestriction(1, board.SIZE+1, "行"),
-						inputRestriction(1, board.SIZE+1, "列"),
-						inputRestriction(1, board.SIZE+1, "値")
-						);
+				int col = inputRestriction(1, board.SIZE+1, "列");
+				notice = applyMove(row, col, inputRestriction(1, board.SIZE+1, "値"));
 			}catch(Board.OutOfRangeIndexException e) {
-				System.out.println("盤面の範囲外が指定されました");
-				System.out.println("もう一度入力してください");
+				notice = "盤面の範囲外が指定されました\nもう一度入力してください";
 				
 			}catch(Board.UndefinedValueException e) {
-				System.out.println("入力できない値が指定されました");
-				System.out.println("もう一度入力してください");
+				notice = "入力できない値が指定されました\nもう一度入力してください";
 				
 			}catch(Board.RejectedPosionException e) {
-				System.out.println("指定した場所は初期値のため変更することができません");
-				System.out.println("もう一度入力してください");
+				notice = "指定した場所は初期値のため変更することができません\nもう一度入力してください";
 				
 			}
 			//表示
-			board.printBoard();
+			printBoard();
+			if(notice != null) {
+				System.out.println(notice);
+			}
 		}
 		
 		judgeResult();
+		try {
+			journal.discard();
+		}catch(IOException e) {
+			System.out.println("手の記録を削除できませんでした : " + e.getMessage());
+		}
 		
 
 	}
 	
+	/**
+	 * 1行のコマンドを実行し、応答を1行で返す
+	 * GameServerのセッションから利用し、標準入出力は利用しない。コマンドは大文字小文字を区別しない。
+	 *   MOVE 行 列 値 : 値を入力する。応答は OK (全て埋まったら OK SOLVED か OK FILLED)
+	 *   PRINT         : 盤面を1行のテキスト(PuzzleFormat)で返す。応答は BOARD 盤面
+	 *   HINT          : 次に確定できるセルを返す。応答は HINT 行 列 値 テクニック、
+	 *                   なければ HINT NONE、候補のない空欄があれば HINT DEAD 行 列
+	 *   UNDO, REDO    : 1手戻す・やり直す。応答は OK 行 列 (手がなければ OK NONE)
+	 *   RESIGN        : 投了して解答を返す。応答は SOLUTION 解答
+	 * 誤った入力と、全て埋まった後か投了した後の入力には ERR 理由 を返す。
+	 * 手はメモリ上のMoveJournalにのみ記録する。
+	 * @param line : String : コマンドの行
+	 * @return String : 応答の行(改行は含まない)
+	 */
+	public String execCommand(String line) {
+		if(journal == null) {
+			journal = createJournal(null);
+		}
+		String[] words = line.trim().split("\\s+");
+		String command = words[0].toUpperCase();
+		if(command.equals("PRINT")) {
+			return "BOARD " + PuzzleFormat.format(board);
+		}
+		if(command.equals("HINT")) {
+			CandidateMarks.Hint hint = board.findHint();
+			if(hint == null) {
+				return "HINT NONE";
+			}
+			if(hint.technique == null) {
+				return "HINT DEAD " + hint.row + " " + hint.col;
+			}
+			return "HINT " + hint.row + " " + hint.col + " " + hint.value + " " + hint.technique.name();
+		}
+		if(!command.equals("MOVE") && !command.equals("UNDO") && !command.equals("REDO") && !command.equals("RESIGN")) {
+			return "ERR 不明なコマンドです: " + words[0];
+		}
+		if(resigned || board.isFilled()) {
+			return "ERR ゲームは終了しています";
+		}
+		try {
+			switch(command) {
+			case "MOVE":
+				return moveCommand(words);
+			case "UNDO":
+			case "REDO":
+				int cell = command.equals("REDO") ? journal.redo(board) : journal.undo(board);
+				return cell < 0 ? "OK NONE" : "OK " + (cell / board.SIZE + 1) + " " + (cell % board.SIZE + 1);
+			default:
+				resigned = true;
+				StringBuilder answer = new StringBuilder("SOLUTION ");
+				for(int i = 0; i < size * size; i++) {
+					answer.append(PuzzleFormat.symbolOf(PuzzleCodec.cellAt(solution, size, i)));
+				}
+				return answer.toString();
+			}
+		}catch(IOException e) {
+			//メモリ上の記録は入出力を行わない
+			return "ERR 手を記録できませんでした";
+		}
+	}
+	
+	/**
+	 * MOVEコマンドを実行する
+	 * @param words : String[] : コマンドを空白で区切ったもの
+	 * @return String : 応答の行
+	 */
+	private String moveCommand(String[] words) {
+		if(words.length != 4) {
+			return "ERR 使い方: MOVE 行 列 値";
+		}
+		try {
+			applyMove(Integer.parseInt(words[1]), Integer.parseInt(words[2]), Integer.parseInt(words[3]));
+		}catch(NumberFormatException e) {
+			return "ERR 数値以外が入力されました";
+		}catch(Board.OutOfRangeIndexException e) {
+			return "ERR 盤面の範囲外が指定されました";
+		}catch(Board.UndefinedValueException e) {
+			return "ERR 入力できない値が指定されました";
+		}catch(Board.RejectedPosionException e) {
+			return "ERR 指定した場所は初期値のため変更することができません";
+		}
+		if(!board.isFilled()) {
+			return "OK";
+		}
+		return board.isSuccess() ? "OK SOLVED" : "OK FILLED";
+	}
+	
+	/**
+	 * 1手を盤面に反映して記録する
+	 * execGame・execCommand・execScriptで共通の処理で、値の検証・候補の更新・解答との照合・記録を行う。
+	 * @param row : int : 行[1, 盤面の一辺の長さ]
+	 * @param col : int : 列[1, 盤面の一辺の長さ]
+	 * @param value : int : 値[1, 盤面の一辺の長さ]
+	 * @return String : 盤面の下に表示するメッセージ(なければnull)
+	 * @throws Board.OutOfRangeIndexException : 範囲外のセルを指定したときのエラー
+	 * @throws Board.UndefinedValueException : 入力できない値を指定したときのエラー
+	 * @throws Board.RejectedPosionException : 初期値のセルを指定したときのエラー
+	 */
+	private String applyMove(int row, int col, int value) throws Board.OutOfRangeIndexException, Board.UndefinedValueException, Board.RejectedPosionException {
+		//範囲外のセルは元の値を読む前に弾く
+		if(row < 1 || board.SIZE < row || col < 1 || board.SIZE < col) {
+			throw new Board.OutOfRangeIndexException();
+		}
+		int old = board.getCell(row, col);
+		board.setCell(row, col, value);
+		String notice = null;
+		try {
+			journal.record(board, row, col, old);
+		}catch(IOException e) {
+			notice = "手の記録を保存できませんでした。以降はメモリ上でのみ記録します : " + e.getMessage();
+		}
+		if(board.isMistake(row, col)) {
+			notice = (notice == null ? "" : notice + "\n") + "(" + row + ", " + col + ") の値は間違っています";
+		}
+		return notice;
+	}
+	
+	/**
+	 * 台本の手でゲームを進める
+	 * 行の入力と1手ごとの表示は行わず、台本からバッチごとに読み込んだ手をexecGameと同じapplyMoveで反映し、
+	 * 表示はバッチの終わりに1度だけ行う。反映できない手は入力し直しを求めずに数えるだけにする。
+	 * 盤面が全て埋まった時点で終了し、残りの手は読み込まない。
+	 * 手の反映(検証)と表示にかかった時間を別々に計測するため、対話時の処理の性能の変化を数値で比べられる。
+	 * 手はメモリ上のMoveJournalにのみ記録する。
+	 * @param script : MoveScript : 手の台本
+	 * @param renderer : BoardRenderer : バッチごとの表示に利用する表示(表示しない場合はnull)
+	 * @return ScriptStats : 手数と処理時間の集計
+	 * @throws IOException : 台本の読み込みに失敗したときのエラー
+	 */
+	public ScriptStats execScript(MoveScript script, BoardRenderer renderer) throws IOException {
+		if(journal == null) {
+			journal = createJournal(null);
+		}
+		ScriptStats stats = new ScriptStats();
+		long start = System.nanoTime();
+		while(!board.isFilled() && script.nextBatch()) {
+			long validationStart = System.nanoTime();
+			for(int i = 0; i < script.length() && !board.isFilled(); i++) {
+				try {
+					applyMove(script.row(i), script.col(i), script.value(i));
+					stats.moves++;
+				}catch(Board.OutOfRangeIndexException | Board.UndefinedValueException | Board.RejectedPosionException e) {
+					stats.rejected++;
+				}
+			}
+			long renderStart = System.nanoTime();
+			stats.validationNanos += renderStart - validationStart;
+			if(renderer != null) {
+				renderer.render(board, showCandidates);
+				stats.frames++;
+				stats.renderNanos += System.nanoTime() - renderStart;
+			}
+		}
+		stats.elapsedNanos = System.nanoTime() - start;
+		stats.solved = board.isSuccess();
+		stats.mistakes = board.getMistakes();
+		return stats;
+	}
+	
+	/**
+	 * 入力を解答と照合するか設定する
+	 * 照合を始めるときは入力済みのセルも照合し、間違いの回数は0から数え直す。
+	 * @param checking : boolean : 照合するならtrue
+	 */
+	public void setChecking(boolean checking) {
+		this.checking = checking;
+		board.attachSolution(checking ? solution : null);
+	}
+	
+	/**
+	 * 手の記録を始める
+	 * ファイルが指定されていればファイルに、なければメモリ上にのみ記録する。
+	 * @param file : Path : 記録するファイル(メモリ上にのみ記録する場合はnull)
+	 * @return MoveJournal : 記録
+	 */
+	private MoveJournal createJournal(Path file) {
+		Puzzle puzzle = new Puzzle(seed, board.copyBoard(), solution);
+		try {
+			return MoveJournal.create(file, MoveJournal.configuredPolicy(), puzzle);
+		}catch(IOException e) {
+			System.out.println("手の記録を保存できません。メモリ上でのみ記録します : " + e.getMessage());
+		}
+		try {
+			return MoveJournal.create(null, MoveJournal.configuredPolicy(), puzzle);
+		}catch(IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * 1手戻すか、戻した手をやり直す
+	 * @param redo : boolean : やり直すならtrue
+	 */
+	private void stepJournal(boolean redo) {
+		int cell;
+		try {
+			cell = redo ? journal.redo(board) : journal.undo(board);
+		}catch(IOException e) {
+			System.out.println("手の記録を保存できませんでした。以降はメモリ上でのみ記録します : " + e.getMessage());
+			printBoard();
+			return;
+		}
+		printBoard();
+		if(cell < 0) {
+			System.out.println(redo ? "やり直せる手がありません" : "戻せる手がありません");
+		}else {
+			System.out.println("(" + (cell / board.SIZE + 1) + ", " + (cell % board.SIZE + 1) + ") を" + (redo ? "やり直しました" : "戻しました"));
+		}
+	}
+	
+	/**
+	 * 盤面を現在の表示モードで表示する
+	 */
+	private void printBoard() {
+		renderer.render(board, showCandidates);
+		if(checking) {
+			System.out.println("間違い : " + board.getMistakes() + "回 (現在 " + board.countWrongCells() + "マス)");
+		}
+	}
+	
+	/**
+	 * 行番号かコマンドを受け付ける標準入力関数
+	 * コマンドを受け付けた場合はその場で実行して0を返す。
+	 * @return int : 標準入力された行番号[1, 盤面の一辺の長さ]（コマンドの場合は0）
+	 */
+	private int inputRowOrCommand() {
+		while(true) {
+			System.out.print("行[1, " + board.SIZE + "] (h: ヒント, p: 候補の表示切替, c: 照合の切替, u: 戻す, r: やり直す) : ");
+			String input = scan.next();
+			if(input.equalsIgnoreCase("h")) {
+				showHint();
+				return 0;
+			}
+			if(input.equalsIgnoreCase("p")) {
+				showCandidates = !showCandidates;
+				printBoard();
+				return 0;
+			}
+			if(input.equalsIgnoreCase("u") || input.equalsIgnoreCase("r")) {
+				stepJournal(input.equalsIgnoreCase("r"));
+				return 0;
+			}
+			if(input.equalsIgnoreCase("c")) {
+				setChecking(!checking);
+				printBoard();
+				return 0;
+			}
+			try {
+				int num = Integer.parseInt(input);
+				if(1 <= num && num <= board.SIZE) {
+					return num;
+				}
+				System.out.println("[1, " + board.SIZE + "]の範囲外の数値が入力されました");
+			}catch(NumberFormatException e) {
+				scan.nextLine();
+				System.out.println("数値以外が入力されました");
+			}
+			System.out.println("もう一度入力してください。");
+		}
+	}
+	
+	/**
+	 * 次に確定できるセルを表示する
+	 * 候補は盤面が差分で更新しているため、盤面の大きさによらずすぐに表示できる。
+	 */
+	private void showHint() {
+		if(!board.isCorrect()) {
+			System.out.println("同じ行・列・格子に重複している数字があります");
+		}
+		CandidateMarks.Hint hint = board.findHint();
+		if(hint == null) {
+			System.out.println("ネイキッドシングル・ヒドゥンシングルで確定できるセルはありません");
+			return;
+		}
+		System.out.println("ヒント : " + hint);
+	}
+	
 	/**
 	 * 指定の入力のみを受け付ける標準入力関数
 	 * @param lowerLimit : int : 入力できる下限値
@@ -339,6 +620,9 @@ public class Sudoku {
 	private void judgeResult() {
 		//正解か判定
 		System.out.println(board.isSuccess() ? "Complete!" : "Faild...");
+		if(checking) {
+			System.out.println("間違えた回数 : " + board.getMistakes());
+		}
 		
 	}
 	
@@ -348,6 +632,17 @@ public class Sudoku {
 	 * @param array : int[] : 入れ替え対象の配列
 	 */
 	public static void shuffle(int[] array) {
+		shuffle(array, new SplittableRandom());
+	}
+	
+	/**
+	 * Fisher–Yates shuffleを用いた配列(array)の入れ替えアルゴリズム
+	 * 指定の乱数を利用するため、同じシード値の乱数からは同じ並びになる。
+	 * 引数に対して、破壊的処理を行う。
+	 * @param array : int[] : 入れ替え対象の配列
+	 * @param random : SplittableRandom : 利用する乱数
+	 */
+	public static void shuffle(int[] array, SplittableRandom random) {
 	    // 配列が要素１つか空ならそのまま終了
 	    if (array.length <= 1) {
 	        return;
@@ -355,7 +650,7 @@ public class Sudoku {
 
 	    // Fisher–Yates shuffle
 	    for (int i = array.length - 1; i > 0; i--) {
-	        int idx = (int)(Math.random() * (i+1));
+	        int idx = random.nextInt(i+1);
 	        // 要素入れ替え(swap)
 	        int tmp = array[idx];
 	        array[idx] = array[i];
@@ -363,4 +658,54 @@ public class Sudoku {
 	    }
 	}
 
+	/**
+	 * execScriptの手数と処理時間の集計
+	 */
+	public static class ScriptStats {
+		public long moves; //反映した手数
+		public long rejected; //反映できなかった手数
+		public long frames; //表示したフレーム数
+		public long validationNanos; //手の反映(検証・候補の更新・照合・記録)にかかった時間[ns]
+		public long renderNanos; //表示にかかった時間[ns]
+		public long elapsedNanos; //台本の読み込みを含む全体の経過時間[ns]
+		public boolean solved; //終了時に盤面が完成していればtrue
+		public int mistakes; //解答と異なる値を入力した回数(照合していなければ0)
+		
+		/**
+		 * 他の集計を加える
+		 * @param other : ScriptStats : 加える集計
+		 */
+		public void merge(ScriptStats other) {
+			moves += other.moves;
+			rejected += other.rejected;
+			frames += other.frames;
+			validationNanos += other.validationNanos;
+			renderNanos += other.renderNanos;
+			elapsedNanos += other.elapsedNanos;
+			solved &= other.solved;
+			mistakes += other.mistakes;
+		}
+		
+		@Override
+		public String toString() {
+			double seconds = elapsedNanos / 1e9;
+			long total = moves + rejected;
+			return String.format("%d moves (%d applied, %d rejected) in %.3f s (%.1f moves/s), solved %b, mistakes %d%n"
+					+ "  validation %.3f ms (%.1f%%, %.1f ns/move)%n"
+					+ "  rendering  %.3f ms (%.1f%%, %d frames, %.1f us/frame)%n"
+					+ "  other      %.3f ms (%.1f%%)",
+					total, moves, rejected, seconds, seconds == 0 ? 0 : total / seconds, solved, mistakes,
+					validationNanos / 1e6, percentOf(validationNanos), total == 0 ? 0 : (double)validationNanos / total,
+					renderNanos / 1e6, percentOf(renderNanos), frames, frames == 0 ? 0 : renderNanos / 1e3 / frames,
+					(elapsedNanos - validationNanos - renderNanos) / 1e6, percentOf(elapsedNanos - validationNanos - renderNanos));
+		}
+		
+		/**
+		 * 全体の経過時間に対する割合を返す
+		 */
+		private double percentOf(long nanos) {
+			return elapsedNanos == 0 ? 0 : 100.0 * nanos / elapsedNanos;
+		}
+	}
+
 }